@@ -0,0 +1,46 @@
+package se325.assignment01.concert.benchmarks;
+
+import se325.assignment01.concert.common.dto.UserDTO;
+import se325.assignment01.concert.service.services.ConcertResource;
+import se325.assignment01.concert.service.services.TestResource;
+
+import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.Response;
+import java.time.LocalDateTime;
+
+/**
+ * Shared set-up for benchmarks that need the database. Unless the concert.db.url system property says otherwise, the
+ * service is pointed at a private in-memory H2 database, so results depend only on the code and the hardware.
+ */
+public class BenchmarkDatabase {
+
+    /**
+     * A concert date which only one concert (id 2) is scheduled on, so its seats aren't shared with any other concert.
+     */
+    public static final long CONCERT_ID = 2;
+    public static final LocalDateTime DATE = LocalDateTime.of(2019, 9, 12, 20, 0);
+
+    private static final String IN_MEMORY_URL = "jdbc:h2:mem:concert-benchmarks;DB_CLOSE_DELAY=-1";
+
+    private BenchmarkDatabase() {}
+
+    /**
+     * Drops and recreates the database, and resets all of the service's in-memory state, exactly as the integration
+     * tests do between tests.
+     */
+    public static void reset() {
+        // Must be set before the service reads its config, which happens the first time it touches the database.
+        if (System.getProperty("concert.db.url") == null) {
+            System.setProperty("concert.db.url", IN_MEMORY_URL);
+        }
+        new TestResource().resetDatabase();
+    }
+
+    /**
+     * Logs in as one of the users in db-init.sql and returns their auth cookie.
+     */
+    public static Cookie login(ConcertResource resource, String username) {
+        Response response = resource.login(new UserDTO(username, "pa55word"));
+        return response.getCookies().get("auth");
+    }
+}
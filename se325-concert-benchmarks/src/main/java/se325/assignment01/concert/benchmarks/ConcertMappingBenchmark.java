@@ -0,0 +1,53 @@
+package se325.assignment01.concert.benchmarks;
+
+import org.hibernate.jpa.QueryHints;
+import org.openjdk.jmh.annotations.*;
+import se325.assignment01.concert.common.dto.ConcertDTO;
+import se325.assignment01.concert.service.domain.Concert;
+import se325.assignment01.concert.service.mapper.ConcertMapper;
+import se325.assignment01.concert.service.services.PersistenceManager;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures mapping the whole concert catalogue to DTOs with {@link ConcertMapper#toDTO(Concert)}. The concerts are
+ * loaded (with their dates and performers) once up front, so no database access is included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcertMappingBenchmark {
+
+    private List<Concert> concerts;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkDatabase.reset();
+
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            em.getTransaction().begin();
+            concerts = em.createNamedQuery("Concert.findAllWithDetails", Concert.class)
+                    .setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false)
+                    .getResultList();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    @Benchmark
+    public List<ConcertDTO> toDTO() {
+        List<ConcertDTO> dtos = new ArrayList<>(concerts.size());
+        for (Concert concert : concerts) {
+            dtos.add(ConcertMapper.toDTO(concert));
+        }
+        return dtos;
+    }
+}
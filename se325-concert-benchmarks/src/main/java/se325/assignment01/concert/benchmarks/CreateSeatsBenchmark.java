@@ -0,0 +1,29 @@
+package se325.assignment01.concert.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import se325.assignment01.concert.service.domain.Seat;
+import se325.assignment01.concert.service.util.TheatreLayout;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link TheatreLayout#createSeatsFor(LocalDateTime)}, which builds a theatre's worth of seat entities for
+ * every concert date at start-up. No database access is involved.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CreateSeatsBenchmark {
+
+    private final LocalDateTime date = BenchmarkDatabase.DATE;
+
+    @Benchmark
+    public Set<Seat> createSeatsFor() {
+        return TheatreLayout.createSeatsFor(date);
+    }
+}
@@ -0,0 +1,60 @@
+package se325.assignment01.concert.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import se325.assignment01.concert.common.dto.BookingRequestDTO;
+import se325.assignment01.concert.common.types.BookingStatus;
+import se325.assignment01.concert.service.jaxrs.LocalDateTimeParam;
+import se325.assignment01.concert.service.services.ConcertResource;
+import se325.assignment01.concert.service.util.TheatreLayout;
+
+import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ConcertResource#getSeats(LocalDateTimeParam, BookingStatus)} for each booking status, on a date
+ * where half of the theatre is booked. Seats are streamed as they're written, so this covers the query, the mapping to
+ * DTOs and JSON serialization.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetSeatsBenchmark {
+
+    @Param({"Booked", "Unbooked", "Any"})
+    private BookingStatus status;
+
+    private ConcertResource resource;
+    private LocalDateTimeParam date;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkDatabase.reset();
+        resource = new ConcertResource();
+        date = new LocalDateTimeParam(LocalDateTimeParam.FORMATTER.format(BenchmarkDatabase.DATE));
+
+        // Book the first half of the rows, one row per booking.
+        Cookie cookie = BenchmarkDatabase.login(resource, "testuser");
+        for (int rowIndex = 0; rowIndex < TheatreLayout.NUM_ROWS / 2; rowIndex++) {
+            List<String> labels = new ArrayList<>();
+            for (int seatIndex = 0; seatIndex < TheatreLayout.NUM_SEATS_PER_ROW; seatIndex++) {
+                labels.add(TheatreLayout.labelFor(rowIndex, seatIndex));
+            }
+            resource.makeBooking(new BookingRequestDTO(BenchmarkDatabase.CONCERT_ID, BenchmarkDatabase.DATE, labels), cookie);
+        }
+    }
+
+    @Benchmark
+    public byte[] getSeats() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput) resource.getSeats(date, status).getEntity()).write(output);
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,95 @@
+package se325.assignment01.concert.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.infra.ThreadParams;
+import se325.assignment01.concert.common.dto.BookingRequestDTO;
+import se325.assignment01.concert.service.services.ConcertResource;
+import se325.assignment01.concert.service.util.TheatreLayout;
+
+import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes several clients to fight over the seats for a single concert date, as happens when tickets
+ * go on sale.
+ * <p>
+ * Each iteration starts from a freshly reset database. Every thread then makes a fixed number of attempts to book a
+ * pair of adjacent seats, chosen at random (but with a fixed seed per thread, so each run makes the same attempts).
+ * Attempts that lose the race for a seat are rejected, which is part of what's being measured.
+ * <p>
+ * Each combination of booking strategy (see Config.BOOKING_STRATEGY) and seat update (see Config.BOOKING_SEAT_UPDATE)
+ * is measured in its own fork, since the service reads its config only once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, batchSize = MakeBookingBenchmark.ATTEMPTS_PER_THREAD)
+@Measurement(iterations = 30, batchSize = MakeBookingBenchmark.ATTEMPTS_PER_THREAD)
+@Threads(4)
+@Fork(1)
+public class MakeBookingBenchmark {
+
+    static final int ATTEMPTS_PER_THREAD = 30;
+
+    @Param({"direct", "lanes"})
+    private String strategy;
+
+    @Param({"entity", "conditional"})
+    private String seatUpdate;
+
+    private ConcertResource resource;
+    private Cookie[] cookies;
+
+    @State(Scope.Thread)
+    public static class Client {
+
+        private int index;
+        private Random random;
+
+        // Reseeded every iteration, so that every iteration makes the same attempts as the last.
+        @Setup(Level.Iteration)
+        public void setUp(ThreadParams threadParams) {
+            index = threadParams.getThreadIndex();
+            random = new Random(index);
+        }
+
+        BookingRequestDTO nextRequest() {
+            int rowIndex = random.nextInt(TheatreLayout.NUM_ROWS);
+            int seatIndex = random.nextInt(TheatreLayout.NUM_SEATS_PER_ROW - 1);
+
+            List<String> labels = new ArrayList<>();
+            labels.add(TheatreLayout.labelFor(rowIndex, seatIndex));
+            labels.add(TheatreLayout.labelFor(rowIndex, seatIndex + 1));
+            return new BookingRequestDTO(BenchmarkDatabase.CONCERT_ID, BenchmarkDatabase.DATE, labels);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        System.setProperty("concert.booking.strategy", strategy);
+        System.setProperty("concert.booking.seatUpdate", seatUpdate);
+        BenchmarkDatabase.reset();
+        resource = new ConcertResource();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        BenchmarkDatabase.reset();
+        cookies = new Cookie[]{
+                BenchmarkDatabase.login(resource, "testuser"),
+                BenchmarkDatabase.login(resource, "testuser2")
+        };
+    }
+
+    @Benchmark
+    public void makeBooking(Client client, Blackhole blackhole) {
+        Cookie cookie = cookies[client.index % cookies.length];
+        Response response = resource.makeBooking(client.nextRequest(), cookie);
+        blackhole.consume(response.getStatus());
+    }
+}
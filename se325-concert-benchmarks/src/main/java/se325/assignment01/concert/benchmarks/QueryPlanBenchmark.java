@@ -0,0 +1,80 @@
+package se325.assignment01.concert.benchmarks;
+
+import org.hibernate.engine.query.spi.QueryPlanCache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.openjdk.jmh.annotations.*;
+import se325.assignment01.concert.service.domain.Booking;
+import se325.assignment01.concert.service.domain.Seat;
+import se325.assignment01.concert.service.domain.User;
+import se325.assignment01.concert.service.services.PersistenceManager;
+
+import javax.persistence.EntityManager;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Query;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the per-request cost of getting a ready-to-run query for each of the service's hot-path queries, without
+ * running it:
+ * <ul>
+ *     <li>namedQuery - looks up a named query, compiled at start-up</li>
+ *     <li>adHocQuery - passes the same JPQL to createQuery, which finds the compiled plan in Hibernate's query plan
+ *     cache by its string</li>
+ *     <li>adHocQueryUncached - passes the JPQL to createQuery with the plan cache emptied first, so the JPQL is parsed
+ *     and translated to SQL every time, as happens whenever the plan cache misses</li>
+ * </ul>
+ * The difference between the last and the first two is the parse and plan overhead saved per request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryPlanBenchmark {
+
+    @Param({"Seat.findByDate", "Seat.findByDateAndStatus", "User.findByUuid", "Booking.findByUserAndStatus"})
+    private String queryName;
+
+    private String jpql;
+    private EntityManager em;
+    private QueryPlanCache planCache;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkDatabase.reset();
+
+        jpql = Stream.of(Seat.class, User.class, Booking.class)
+                .flatMap(type -> Stream.of(type.getAnnotation(NamedQueries.class).value()))
+                .filter(q -> q.name().equals(queryName))
+                .map(NamedQuery::query)
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("No such named query: " + queryName));
+
+        em = PersistenceManager.instance().createEntityManager();
+        planCache = em.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class).getQueryPlanCache();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+    }
+
+    @Benchmark
+    public Query namedQuery() {
+        return em.createNamedQuery(queryName);
+    }
+
+    @Benchmark
+    public Query adHocQuery() {
+        return em.createQuery(jpql);
+    }
+
+    @Benchmark
+    public Query adHocQueryUncached() {
+        planCache.cleanup();
+        return em.createQuery(jpql);
+    }
+}
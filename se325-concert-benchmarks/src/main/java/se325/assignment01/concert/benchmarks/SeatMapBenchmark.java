@@ -0,0 +1,65 @@
+package se325.assignment01.concert.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import se325.assignment01.concert.common.dto.BookingRequestDTO;
+import se325.assignment01.concert.common.types.BookingStatus;
+import se325.assignment01.concert.service.jaxrs.LocalDateTimeParam;
+import se325.assignment01.concert.service.services.ConcertResource;
+import se325.assignment01.concert.service.util.TheatreLayout;
+
+import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares fetching and serializing every seat for a date as a list of SeatDTOs ({@link ConcertResource#getSeats})
+ * with doing the same for the compact seat map ({@link ConcertResource#getSeatMap}), on a date where half of the
+ * theatre is booked. The seat list is streamed out by the resource itself. The seat map is serialized with a plain
+ * Jackson {@link ObjectMapper}, as the RESTEasy Jackson provider does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SeatMapBenchmark {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private ConcertResource resource;
+    private LocalDateTimeParam date;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        BenchmarkDatabase.reset();
+        resource = new ConcertResource();
+        date = new LocalDateTimeParam(LocalDateTimeParam.FORMATTER.format(BenchmarkDatabase.DATE));
+
+        // Book every other seat in the theatre, a row at a time.
+        Cookie cookie = BenchmarkDatabase.login(resource, "testuser");
+        for (int rowIndex = 0; rowIndex < TheatreLayout.NUM_ROWS; rowIndex++) {
+            List<String> labels = new ArrayList<>();
+            for (int seatIndex = rowIndex % 2; seatIndex < TheatreLayout.NUM_SEATS_PER_ROW; seatIndex += 2) {
+                labels.add(TheatreLayout.labelFor(rowIndex, seatIndex));
+            }
+            resource.makeBooking(new BookingRequestDTO(BenchmarkDatabase.CONCERT_ID, BenchmarkDatabase.DATE, labels), cookie);
+        }
+    }
+
+    @Benchmark
+    public byte[] seats() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ((StreamingOutput) resource.getSeats(date, BookingStatus.Any).getEntity()).write(output);
+        return output.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] seatMap() throws Exception {
+        return mapper.writeValueAsBytes(resource.getSeatMap(date).getEntity());
+    }
+}
@@ -0,0 +1,106 @@
+package se325.assignment01.concert.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import se325.assignment01.concert.service.domain.Seat;
+import se325.assignment01.concert.service.services.PersistenceManager;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the seat queries used by getSeats and makeBooking as the number of concert dates (and so the size of the
+ * SEATS table) grows, with and without the SEATS indexes.
+ * <p>
+ * Each trial adds numDates dates' worth of seats (120 per date) directly with SQL. Each query is then for a different
+ * one of those dates, as H2 would otherwise just return its cached result from the previous (identical) query. With
+ * indexed=false, the SEATS indexes are dropped first, to show what the queries cost without them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SeatQueryScalingBenchmark {
+
+    private static final LocalDateTime FIRST_DATE = LocalDateTime.of(2030, 1, 1, 20, 0);
+
+    @Param({"100", "1000", "10000"})
+    private int numDates;
+
+    @Param({"true", "false"})
+    private boolean indexed;
+
+    private EntityManager em;
+    private int dateIndex = 0;
+    private List<String> labels = Arrays.asList("E5", "E6", "E7", "E8");
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkDatabase.reset();
+
+        em = PersistenceManager.instance().createEntityManager();
+        em.getTransaction().begin();
+
+        // One row per seat per date. Ids are well clear of those handed out by the seat id sequence.
+        em.createNativeQuery("INSERT INTO SEATS (ID, LABEL, IS_BOOKED, DATE, PRICE, VERSION) " +
+                "SELECT 10000000 + d.X * 120 + s.X, CHAR(65 + s.X / 12) || (MOD(s.X, 12) + 1), MOD(s.X, 3) = 0, " +
+                "DATEADD('DAY', d.X, TIMESTAMP '2030-01-01 20:00:00'), 100, 0 " +
+                "FROM SYSTEM_RANGE(0, ?) d CROSS JOIN SYSTEM_RANGE(0, 119) s")
+                .setParameter(1, numDates - 1)
+                .executeUpdate();
+
+        if (!indexed) {
+            em.createNativeQuery("DROP INDEX IDX_SEATS_DATE_BOOKED_LABEL").executeUpdate();
+            em.createNativeQuery("ALTER TABLE SEATS DROP CONSTRAINT UK_SEATS_DATE_LABEL").executeUpdate();
+        }
+
+        em.createNativeQuery("ANALYZE").executeUpdate();
+        em.getTransaction().commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+    }
+
+    /**
+     * Steps through the dates in a scattered order, so consecutive queries don't hit neighbouring index entries.
+     */
+    private LocalDateTime nextDate() {
+        dateIndex = (dateIndex + 7919) % numDates;
+        return FIRST_DATE.plusDays(dateIndex);
+    }
+
+    @Benchmark
+    public List<Seat> findByDate() {
+        List<Seat> seats = em.createNamedQuery("Seat.findByDate", Seat.class)
+                .setParameter("date", nextDate())
+                .getResultList();
+        em.clear();
+        return seats;
+    }
+
+    @Benchmark
+    public List<Seat> findByDateAndStatus() {
+        List<Seat> seats = em.createNamedQuery("Seat.findByDateAndStatus", Seat.class)
+                .setParameter("date", nextDate())
+                .setParameter("isBooked", false)
+                .getResultList();
+        em.clear();
+        return seats;
+    }
+
+    @Benchmark
+    public List<Seat> findUnbookedByDateAndLabels() {
+        List<Seat> seats = em.createNamedQuery("Seat.findUnbookedByDateAndLabels", Seat.class)
+                .setParameter("date", nextDate())
+                .setParameter("labels", labels)
+                .getResultList();
+        em.clear();
+        return seats;
+    }
+}
@@ -0,0 +1,141 @@
+package se325.assignment01.concert.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import se325.assignment01.concert.common.dto.ConcertInfoNotificationDTO;
+import se325.assignment01.concert.common.dto.ConcertInfoSubscriptionDTO;
+import se325.assignment01.concert.service.services.SubscriptionRegistry;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures notifying subscribers when a show crosses a booking threshold, with N subscribers parked on that show.
+ * <p>
+ * Thresholds are spread evenly from 1% to 100% and the show is 50% booked, so about half of the subscribers are
+ * notified and the other half should be left alone. Subscribers are stand-ins for real suspended requests, so this
+ * measures the registry and the notification loop rather than network I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubscriptionFanOutBenchmark {
+
+    private static final int PERCENTAGE_BOOKED = 50;
+
+    @Param({"100", "1000", "10000"})
+    private int numSubscribers;
+
+    private SubscriptionRegistry registry;
+
+    // Each invocation needs a full set of parked subscribers, as notifying them removes them.
+    @Setup(Level.Invocation)
+    public void setUp() {
+        registry = new SubscriptionRegistry() {
+        };
+        for (int i = 0; i < numSubscribers; i++) {
+            ConcertInfoSubscriptionDTO subInfo = new ConcertInfoSubscriptionDTO(
+                    BenchmarkDatabase.CONCERT_ID, BenchmarkDatabase.DATE, 1 + i % 100);
+            registry.add(i, subInfo, new ParkedResponse());
+        }
+    }
+
+    @Benchmark
+    public int notifySubscribers() {
+        ConcertInfoNotificationDTO notification = new ConcertInfoNotificationDTO(60);
+        List<AsyncResponse> crossed = registry.takeCrossed(BenchmarkDatabase.CONCERT_ID, BenchmarkDatabase.DATE, PERCENTAGE_BOOKED);
+        for (AsyncResponse sub : crossed) {
+            sub.resume(notification);
+        }
+        return crossed.size();
+    }
+
+    /**
+     * A suspended response that does nothing but remember whether it has been resumed.
+     */
+    private static class ParkedResponse implements AsyncResponse {
+
+        private boolean done = false;
+
+        @Override
+        public boolean resume(Object response) {
+            if (done) {
+                return false;
+            }
+            done = true;
+            return true;
+        }
+
+        @Override
+        public boolean resume(Throwable response) {
+            return resume((Object) response);
+        }
+
+        @Override
+        public boolean cancel() {
+            return resume((Object) null);
+        }
+
+        @Override
+        public boolean cancel(int retryAfter) {
+            return cancel();
+        }
+
+        @Override
+        public boolean cancel(Date retryAfter) {
+            return cancel();
+        }
+
+        @Override
+        public boolean isSuspended() {
+            return !done;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done;
+        }
+
+        @Override
+        public boolean setTimeout(long time, TimeUnit unit) {
+            return !done;
+        }
+
+        @Override
+        public void setTimeoutHandler(TimeoutHandler handler) {
+        }
+
+        @Override
+        public Collection<Class<?>> register(Class<?> callback) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Map<Class<?>, Collection<Class<?>>> register(Class<?> callback, Class<?>... callbacks) {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public Collection<Class<?>> register(Object callback) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Map<Class<?>, Collection<Class<?>>> register(Object callback, Object... callbacks) {
+            return Collections.emptyMap();
+        }
+    }
+}
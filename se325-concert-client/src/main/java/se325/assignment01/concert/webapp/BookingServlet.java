@@ -3,7 +3,7 @@ package se325.assignment01.concert.webapp;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import se325.assignment01.concert.common.dto.ConcertDTO;
-import se325.assignment01.concert.common.dto.SeatDTO;
+import se325.assignment01.concert.common.dto.SeatMapDTO;
 import se325.assignment01.concert.webapp.util.AuthUtil;
 
 import javax.servlet.ServletException;
@@ -12,14 +12,12 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
-import javax.ws.rs.core.GenericType;
 import java.io.IOException;
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 public class BookingServlet extends HttpServlet {
@@ -42,43 +40,58 @@ public class BookingServlet extends HttpServlet {
         long concertId = Long.parseLong(req.getParameter("concertId"));
         LocalDateTime date = LocalDateTime.parse(req.getParameter("date"), FORMATTER);
 
-        Client wsClient = ClientBuilder.newClient();
-        try {
-            // Grab the concert
-            ConcertDTO concert = wsClient.target(Config.WEB_SERVICE_URI + "/concerts/" + concertId)
-                    .request().get(ConcertDTO.class);
+        Client wsClient = WebServiceClient.get(getServletContext());
 
+        // Grab the concert and the seat map at the same time. The seat map is only used if the date turns out to be
+        // valid for the concert. The seat map is a bitset rather than a list of seat objects, so it's much smaller
+        // than /seats/{date}.
+        Future<ConcertDTO> concertFuture = wsClient.target(Config.WEB_SERVICE_URI + "/concerts/" + concertId)
+                .request().async().get(ConcertDTO.class);
+        Future<SeatMapDTO> seatMapFuture = wsClient.target(Config.WEB_SERVICE_URI + "/seats/" + FORMATTER.format(date) + "/map")
+                .request().async().get(SeatMapDTO.class);
 
-            // If the date is invalid for that concert, get outta here.
-            if (!concert.getDates().contains(date)) {
-                LOGGER.warn("doGet(): Date invalid for concert - redirecting to /Concerts");
-                resp.sendRedirect("./Concerts"); // TODO Some ? parameter so that we display a message on page load?
-                return;
-            }
+        ConcertDTO concert = await(concertFuture);
 
-            // Go get the already-booked seats from the web service, so we can mark them as such on the app.
-            List<SeatDTO> bookedSeats = wsClient.target(Config.WEB_SERVICE_URI + "/seats/" + FORMATTER.format(date) + "?status=Booked")
-                    .request().get(new GenericType<List<SeatDTO>>() {
-                    });
-            LOGGER.info("doGet(): bookedSeats size = " + bookedSeats.size());
+        // If the date is invalid for that concert, get outta here.
+        if (!concert.getDates().contains(date)) {
+            seatMapFuture.cancel(true);
+            LOGGER.warn("doGet(): Date invalid for concert - redirecting to /Concerts");
+            resp.sendRedirect("./Concerts"); // TODO Some ? parameter so that we display a message on page load?
+            return;
+        }
 
-//             TEST
-//            bookedSeats = Arrays.asList(new SeatDTO("A1", null), new SeatDTO("G11", null), new SeatDTO("G12", null));
+        // The already-booked seats, so we can mark them as such on the app.
+        List<String> bookedSeats = await(seatMapFuture).getBookedLabels();
+        LOGGER.info("doGet(): bookedSeats size = " + bookedSeats.size());
 
-            List<String> bookedSeatLabels = bookedSeats.stream().map(seat -> "\"" + seat.getLabel() + "\"").collect(Collectors.toList());
-            String seatLabelString = String.join(", ", bookedSeatLabels);
-            LOGGER.info("doGet(): seatLabelString = " + seatLabelString);
+        List<String> bookedSeatLabels = bookedSeats.stream().map(label -> "\"" + label + "\"").collect(Collectors.toList());
+        String seatLabelString = String.join(", ", bookedSeatLabels);
+        LOGGER.info("doGet(): seatLabelString = " + seatLabelString);
 
-            // Add data to req attrs to be displayed in JSP
-            req.setAttribute("concert", concert);
-            req.setAttribute("concertDateString", FORMATTER.format(date));
-            req.setAttribute("bookedSeatLabels", seatLabelString);
+        // Add data to req attrs to be displayed in JSP
+        req.setAttribute("concert", concert);
+        req.setAttribute("concertDateString", FORMATTER.format(date));
+        req.setAttribute("bookedSeatLabels", seatLabelString);
 
-            // Go to JSP
-            req.getRequestDispatcher("/WEB-INF/jsp/booking.jsp").forward(req, resp);
+        // Go to JSP
+        req.getRequestDispatcher("/WEB-INF/jsp/booking.jsp").forward(req, resp);
+    }
 
-        } finally {
-            wsClient.close();
+    /**
+     * Waits for the given web service request to finish. Errors from the web service (e.g. a 404) are rethrown as-is,
+     * just as they would be for a synchronous request.
+     */
+    private static <T> T await(Future<T> future) throws ServletException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServletException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new ServletException(e.getCause());
         }
     }
 }
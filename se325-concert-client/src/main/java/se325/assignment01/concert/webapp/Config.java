@@ -1,5 +1,9 @@
 package se325.assignment01.concert.webapp;
 
+/**
+ * Settings for the webapp. Apart from {@link #WEB_SERVICE_URI}, each can be overridden with a system property of the
+ * same name when the webapp is started (e.g. -Dconcert.client.poolSize=50).
+ */
 public class Config {
 
     /**
@@ -8,5 +12,37 @@ public class Config {
      */
     public static final String WEB_SERVICE_URI = "http://localhost:10000/webservice/services/concert-service";
 
+    /**
+     * The maximum number of open connections to the web service, shared by all servlets. Requests beyond this wait
+     * for a connection to be returned to the pool.
+     */
+    public static final int CLIENT_POOL_SIZE = Integer.getInteger("concert.client.poolSize", 20);
+
+    /**
+     * How long an idle pooled connection is kept alive for reuse before it's closed.
+     */
+    public static final long CLIENT_KEEP_ALIVE_MILLIS = Long.getLong("concert.client.keepAliveMillis", 30 * 1000);
+
+    /**
+     * How long to wait for a connection to the web service to be established.
+     */
+    public static final int CLIENT_CONNECT_TIMEOUT_MILLIS = Integer.getInteger("concert.client.connectTimeoutMillis", 2 * 1000);
+
+    /**
+     * How long to wait for data from the web service once a request has been sent.
+     */
+    public static final int CLIENT_READ_TIMEOUT_MILLIS = Integer.getInteger("concert.client.readTimeoutMillis", 10 * 1000);
+
+    /**
+     * How long to wait for a pooled connection to become free.
+     */
+    public static final int CLIENT_POOL_TIMEOUT_MILLIS = Integer.getInteger("concert.client.poolTimeoutMillis", 5 * 1000);
+
+    /**
+     * The number of threads available to run web service requests asynchronously, e.g. so that a servlet can make
+     * several requests at once.
+     */
+    public static final int CLIENT_ASYNC_THREADS = Integer.getInteger("concert.client.asyncThreads", 20);
+
     private Config() {}
 }
@@ -10,7 +10,6 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.NewCookie;
 import javax.ws.rs.core.Response;
@@ -30,11 +29,11 @@ public class LoginServlet extends HttpServlet {
 
         UserDTO user = new UserDTO(username, password);
 
-        Client wsClient = ClientBuilder.newClient();
-        try {
-            Response wsResponse = wsClient.target(Config.WEB_SERVICE_URI + "/login")
-                    .request().post(Entity.json(user));
+        Client wsClient = WebServiceClient.get(getServletContext());
 
+        Response wsResponse = wsClient.target(Config.WEB_SERVICE_URI + "/login")
+                .request().post(Entity.json(user));
+        try {
             LOGGER.info("LoginServlet: Status from web service: " + wsResponse.getStatus());
 
             // Essentially forward the cookie onto the browser.
@@ -49,7 +48,8 @@ public class LoginServlet extends HttpServlet {
             resp.sendRedirect("./Concerts");
         }
         finally {
-            wsClient.close();
+            // Hands the connection back to the pool.
+            wsResponse.close();
         }
 
     }
@@ -0,0 +1,89 @@
+package se325.assignment01.concert.webapp;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.jboss.resteasy.client.jaxrs.engines.ApacheHttpClient43Engine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the single JAX-RS {@link Client} that all servlets use to talk to the web service, when the webapp starts,
+ * and closes it when the webapp stops. Registered in web.xml.
+ * <p>
+ * Clients are thread-safe, and expensive to create, so sharing one means that each page view reuses pooled,
+ * kept-alive connections (see the CLIENT_ settings in {@link Config}) rather than setting up its own.
+ * <p>
+ * The client never stores cookies. Any cookies a request needs (e.g. the user's auth cookie) must be passed to that
+ * request explicitly - otherwise one user's cookies would be sent along with everyone else's requests.
+ */
+public class WebServiceClient implements ServletContextListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WebServiceClient.class);
+
+    private static final String ATTRIBUTE_NAME = WebServiceClient.class.getName();
+
+    // Runs the client's async requests. The client doesn't shut it down when it's closed, so we do.
+    private ExecutorService asyncExecutor;
+
+    /**
+     * Gets the shared client for the given webapp.
+     */
+    public static Client get(ServletContext context) {
+        return (Client) context.getAttribute(ATTRIBUTE_NAME);
+    }
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        PoolingHttpClientConnectionManager connectionManager =
+                new PoolingHttpClientConnectionManager(Config.CLIENT_KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS);
+        // Every request goes to the same host, so the whole pool is available to it.
+        connectionManager.setMaxTotal(Config.CLIENT_POOL_SIZE);
+        connectionManager.setDefaultMaxPerRoute(Config.CLIENT_POOL_SIZE);
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(Config.CLIENT_CONNECT_TIMEOUT_MILLIS)
+                        .setSocketTimeout(Config.CLIENT_READ_TIMEOUT_MILLIS)
+                        .setConnectionRequestTimeout(Config.CLIENT_POOL_TIMEOUT_MILLIS)
+                        .build())
+                .setKeepAliveStrategy((response, context) -> Config.CLIENT_KEEP_ALIVE_MILLIS)
+                .evictIdleConnections(Config.CLIENT_KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS)
+                .disableCookieManagement()
+                .build();
+
+        asyncExecutor = Executors.newFixedThreadPool(Config.CLIENT_ASYNC_THREADS);
+
+        Client client = ((ResteasyClientBuilder) ClientBuilder.newBuilder())
+                .httpEngine(new ApacheHttpClient43Engine(httpClient, true))
+                .executorService(asyncExecutor)
+                .build();
+
+        event.getServletContext().setAttribute(ATTRIBUTE_NAME, client);
+        LOGGER.info("contextInitialized(): Created web service client with a pool of " + Config.CLIENT_POOL_SIZE + " connections");
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        Client client = get(event.getServletContext());
+        if (client != null) {
+            event.getServletContext().removeAttribute(ATTRIBUTE_NAME);
+            client.close();
+        }
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdown();
+        }
+    }
+}
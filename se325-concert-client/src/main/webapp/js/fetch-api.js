@@ -14,6 +14,10 @@ export const FetchAPI = {
         return fetch(`${WEB_URI}/concerts/${id}`);
     },
 
+    getSeatEventsUrl(concertId, date) {
+        return `${WEB_URI}/concerts/${concertId}/seats/${date}/events`;
+    },
+
     makeBookingRequest(bookingRequest) {
         return this.post(`${WEB_URI}/bookings`, bookingRequest);
     },
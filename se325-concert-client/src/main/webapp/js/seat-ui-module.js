@@ -62,6 +62,53 @@ export const SeatUI = {
             }
         });
     },
+
+    setBookedByLabel(seats, isBooked, ...labels) {
+        const matchingSeats = SeatData.getSeatsByLabel(seats, ...labels);
+        this.setBooked(isBooked, ...matchingSeats);
+    },
+
+    /**
+     * Marks the given seats as booked or not. Seats that become booked can't be held any more.
+     */
+    setBooked(isBooked, ...seats) {
+        seats.forEach(seat => {
+            seat.isBooked = isBooked;
+            if (isBooked) {
+                seat.isHeld = false;
+            }
+            if (seat.seatDiv) {
+                seat.seatDiv.classList.toggle("booked", seat.isBooked);
+                seat.seatDiv.classList.toggle("held", seat.isHeld);
+            }
+        });
+    },
+
+    /**
+     * Keeps the given seats up to date with the server-sent seat events at the given URL. The first event (and the
+     * first after any reconnection) is a "snapshot" listing every booked seat; each "delta" after that lists seats
+     * which have been booked or released since.
+     *
+     * Calls onChange after each event is applied, and returns the EventSource so that the caller can close it.
+     */
+    streamSeatUpdates(seats, url, onChange = () => {}) {
+        const source = new EventSource(url);
+
+        source.addEventListener("snapshot", event => {
+            const snapshot = JSON.parse(event.data);
+            seats.forEach(seat => this.setBooked(snapshot.booked.includes(seat.label), seat));
+            onChange();
+        });
+
+        source.addEventListener("delta", event => {
+            const delta = JSON.parse(event.data);
+            this.setBookedByLabel(seats, true, ...delta.booked);
+            this.setBookedByLabel(seats, false, ...delta.released);
+            onChange();
+        });
+
+        return source;
+    },
 };
 
 /**
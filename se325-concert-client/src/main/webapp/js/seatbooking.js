@@ -11,6 +11,9 @@ export function initSeatBookingPage(concertId, concertDate) {
     const container = document.querySelector(".seat-map");
     SeatUI.generateDefaultBookingUI(container, seats, handleSeatClicked);
 
+    // Keep the seats up to date as other people book them
+    SeatUI.streamSeatUpdates(seats, FetchAPI.getSeatEventsUrl(concertId, concertDate), displayTotals);
+
     // Remove the loading bar
     document.querySelector("#seats-loading").style.display = "none";
 
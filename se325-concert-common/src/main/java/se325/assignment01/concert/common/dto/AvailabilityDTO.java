@@ -0,0 +1,69 @@
+package se325.assignment01.concert.common.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import se325.assignment01.concert.common.jackson.LocalDateTimeDeserializer;
+import se325.assignment01.concert.common.jackson.LocalDateTimeSerializer;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO class to represent how full a concert is on a particular date.
+ * <p>
+ * An AvailabilityDTO describes a concert date in terms of:
+ * concertId            the concert
+ * date                 the date of the performance
+ * numSeatsBooked       the number of seats that have been booked
+ * numSeatsRemaining    the number of seats that are still available
+ */
+public class AvailabilityDTO {
+
+    private long concertId;
+    private LocalDateTime date;
+    private int numSeatsBooked;
+    private int numSeatsRemaining;
+
+    public AvailabilityDTO() {
+    }
+
+    public AvailabilityDTO(long concertId, LocalDateTime date, int numSeatsBooked, int numSeatsRemaining) {
+        this.concertId = concertId;
+        this.date = date;
+        this.numSeatsBooked = numSeatsBooked;
+        this.numSeatsRemaining = numSeatsRemaining;
+    }
+
+    public long getConcertId() {
+        return concertId;
+    }
+
+    public void setConcertId(long concertId) {
+        this.concertId = concertId;
+    }
+
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDateTime date) {
+        this.date = date;
+    }
+
+    public int getNumSeatsBooked() {
+        return numSeatsBooked;
+    }
+
+    public void setNumSeatsBooked(int numSeatsBooked) {
+        this.numSeatsBooked = numSeatsBooked;
+    }
+
+    public int getNumSeatsRemaining() {
+        return numSeatsRemaining;
+    }
+
+    public void setNumSeatsRemaining(int numSeatsRemaining) {
+        this.numSeatsRemaining = numSeatsRemaining;
+    }
+}
@@ -0,0 +1,72 @@
+package se325.assignment01.concert.common.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import se325.assignment01.concert.common.jackson.LocalDateTimeDeserializer;
+import se325.assignment01.concert.common.jackson.LocalDateTimeSerializer;
+
+import java.time.LocalDateTime;
+
+/**
+ * Represents a request to book the best available block of adjacent seats, rather than particular seats.
+ * <p>
+ * A BestAvailableRequestDTO describes a booking in terms of:
+ * concertId    the concert being booked
+ * date         the date of the performance
+ * numSeats     the number of adjacent seats wanted, all in the same row
+ * priceBand    the name of the price band to book in (see {@link PriceBandDTO}), or null for any band
+ */
+public class BestAvailableRequestDTO {
+
+    private long concertId;
+    private LocalDateTime date;
+    private int numSeats;
+    private String priceBand;
+
+    public BestAvailableRequestDTO() {}
+
+    public BestAvailableRequestDTO(long concertId, LocalDateTime date, int numSeats) {
+        this(concertId, date, numSeats, null);
+    }
+
+    public BestAvailableRequestDTO(long concertId, LocalDateTime date, int numSeats, String priceBand) {
+        this.concertId = concertId;
+        this.date = date;
+        this.numSeats = numSeats;
+        this.priceBand = priceBand;
+    }
+
+    public long getConcertId() {
+        return concertId;
+    }
+
+    public void setConcertId(long concertId) {
+        this.concertId = concertId;
+    }
+
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDateTime date) {
+        this.date = date;
+    }
+
+    public int getNumSeats() {
+        return numSeats;
+    }
+
+    public void setNumSeats(int numSeats) {
+        this.numSeats = numSeats;
+    }
+
+    public String getPriceBand() {
+        return priceBand;
+    }
+
+    public void setPriceBand(String priceBand) {
+        this.priceBand = priceBand;
+    }
+}
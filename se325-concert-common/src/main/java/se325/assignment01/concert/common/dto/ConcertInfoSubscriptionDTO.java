@@ -14,6 +14,7 @@ public class ConcertInfoSubscriptionDTO {
     private long concertId;
     private LocalDateTime date;
     private int percentageBooked;
+    private Integer ttlSeconds;
 
     public ConcertInfoSubscriptionDTO() {
     }
@@ -24,6 +25,11 @@ public class ConcertInfoSubscriptionDTO {
         this.percentageBooked = percentageBooked;
     }
 
+    public ConcertInfoSubscriptionDTO(long concertId, LocalDateTime date, int percentageBooked, Integer ttlSeconds) {
+        this(concertId, date, percentageBooked);
+        this.ttlSeconds = ttlSeconds;
+    }
+
     public long getConcertId() {
         return concertId;
     }
@@ -50,6 +56,18 @@ public class ConcertInfoSubscriptionDTO {
         this.percentageBooked = percentageBooked;
     }
 
+    /**
+     * How long, in seconds, to wait to be notified before giving up. Optional - if it's null, or longer than the
+     * service allows, the service's own limit applies.
+     */
+    public Integer getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(Integer ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -62,6 +80,7 @@ public class ConcertInfoSubscriptionDTO {
                 .append(concertId, that.concertId)
                 .append(percentageBooked, that.percentageBooked)
                 .append(date, that.date)
+                .append(ttlSeconds, that.ttlSeconds)
                 .isEquals();
     }
 
@@ -71,6 +90,7 @@ public class ConcertInfoSubscriptionDTO {
                 .append(concertId)
                 .append(date)
                 .append(percentageBooked)
+                .append(ttlSeconds)
                 .toHashCode();
     }
 }
@@ -0,0 +1,51 @@
+package se325.assignment01.concert.common.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * DTO class to represent a block of rows at the concert venue that share the same seat price.
+ * <p>
+ * A PriceBandDTO describes a price band in terms of:
+ * name         the name of the band (e.g. "Gold Seating")
+ * price        the price of each seat in the band
+ * numRows      the number of consecutive rows in the band. Bands are listed from the front row backwards.
+ */
+public class PriceBandDTO {
+
+    private String name;
+    private BigDecimal price;
+    private int numRows;
+
+    public PriceBandDTO() {
+    }
+
+    public PriceBandDTO(String name, BigDecimal price, int numRows) {
+        this.name = name;
+        this.price = price;
+        this.numRows = numRows;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public void setPrice(BigDecimal price) {
+        this.price = price;
+    }
+
+    public int getNumRows() {
+        return numRows;
+    }
+
+    public void setNumRows(int numRows) {
+        this.numRows = numRows;
+    }
+}
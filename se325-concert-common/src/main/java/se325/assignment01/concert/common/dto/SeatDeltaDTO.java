@@ -0,0 +1,48 @@
+package se325.assignment01.concert.common.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO class to represent a change in the state of some of the seats for a concert date.
+ * <p>
+ * A SeatDeltaDTO describes the change in terms of:
+ * booked       the labels of seats that are now booked
+ * released     the labels of seats that are now available again
+ * <p>
+ * Deltas describe the new state of each seat, rather than a toggle, so applying the same delta twice is harmless.
+ */
+public class SeatDeltaDTO {
+
+    private List<String> booked = new ArrayList<>();
+    private List<String> released = new ArrayList<>();
+
+    public SeatDeltaDTO() {
+    }
+
+    public SeatDeltaDTO(List<String> booked, List<String> released) {
+        this.booked = booked;
+        this.released = released;
+    }
+
+    public List<String> getBooked() {
+        return booked;
+    }
+
+    public void setBooked(List<String> booked) {
+        this.booked = booked;
+    }
+
+    public List<String> getReleased() {
+        return released;
+    }
+
+    public void setReleased(List<String> released) {
+        this.released = released;
+    }
+
+    @Override
+    public String toString() {
+        return "SeatDeltaDTO{booked=" + booked + ", released=" + released + "}";
+    }
+}
@@ -0,0 +1,116 @@
+package se325.assignment01.concert.common.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import se325.assignment01.concert.common.jackson.LocalDateTimeDeserializer;
+import se325.assignment01.concert.common.jackson.LocalDateTimeSerializer;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * DTO class to represent the state of every seat in the theatre on a particular date, in a compact form.
+ * <p>
+ * A SeatMapDTO describes a concert date in terms of:
+ * date             the date of the performance
+ * numRows          the number of rows in the theatre
+ * numSeatsPerRow   the number of seats in each row
+ * booked           a base64-encoded bitset with one bit per seat, set if the seat is taken. Seat n of row r (both
+ *                  zero-based) is bit (r * numSeatsPerRow + n), and bit i is stored in byte (i / 8) at position (i % 8),
+ *                  counting from the least significant bit.
+ * priceBands       the price of each block of rows, from the front row backwards
+ * <p>
+ * Seat labels follow from the layout: row r is the letter ('A' + r), and seat n in that row is numbered n + 1.
+ */
+public class SeatMapDTO {
+
+    private LocalDateTime date;
+    private int numRows;
+    private int numSeatsPerRow;
+    private String booked;
+    private List<PriceBandDTO> priceBands = new ArrayList<>();
+
+    public SeatMapDTO() {
+    }
+
+    /**
+     * Creates a seat map from one bitmask per row, where bit n of rows[r] is set if seat n of row r is taken.
+     */
+    public SeatMapDTO(LocalDateTime date, int[] rows, int numSeatsPerRow, List<PriceBandDTO> priceBands) {
+        this.date = date;
+        this.numRows = rows.length;
+        this.numSeatsPerRow = numSeatsPerRow;
+        this.priceBands = priceBands;
+
+        byte[] bits = new byte[(rows.length * numSeatsPerRow + 7) / 8];
+        for (int rowIndex = 0; rowIndex < rows.length; rowIndex++) {
+            for (int seatIndex = 0; seatIndex < numSeatsPerRow; seatIndex++) {
+                if ((rows[rowIndex] & (1 << seatIndex)) != 0) {
+                    int bit = rowIndex * numSeatsPerRow + seatIndex;
+                    bits[bit / 8] |= 1 << (bit % 8);
+                }
+            }
+        }
+        this.booked = Base64.getEncoder().encodeToString(bits);
+    }
+
+    @JsonSerialize(using = LocalDateTimeSerializer.class)
+    @JsonDeserialize(using = LocalDateTimeDeserializer.class)
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    public void setDate(LocalDateTime date) {
+        this.date = date;
+    }
+
+    public int getNumRows() {
+        return numRows;
+    }
+
+    public void setNumRows(int numRows) {
+        this.numRows = numRows;
+    }
+
+    public int getNumSeatsPerRow() {
+        return numSeatsPerRow;
+    }
+
+    public void setNumSeatsPerRow(int numSeatsPerRow) {
+        this.numSeatsPerRow = numSeatsPerRow;
+    }
+
+    public String getBooked() {
+        return booked;
+    }
+
+    public void setBooked(String booked) {
+        this.booked = booked;
+    }
+
+    public List<PriceBandDTO> getPriceBands() {
+        return priceBands;
+    }
+
+    public void setPriceBands(List<PriceBandDTO> priceBands) {
+        this.priceBands = priceBands;
+    }
+
+    /**
+     * Decodes the bitset, and gets the labels of all taken seats, in row order.
+     */
+    @JsonIgnore
+    public List<String> getBookedLabels() {
+        byte[] bits = Base64.getDecoder().decode(booked);
+        List<String> labels = new ArrayList<>();
+        for (int bit = 0; bit < numRows * numSeatsPerRow; bit++) {
+            if ((bits[bit / 8] & (1 << (bit % 8))) != 0) {
+                labels.add("" + (char) ('A' + bit / numSeatsPerRow) + (bit % numSeatsPerRow + 1));
+            }
+        }
+        return labels;
+    }
+}
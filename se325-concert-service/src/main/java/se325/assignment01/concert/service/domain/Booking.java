@@ -12,7 +12,16 @@ import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
 @Entity
-@Table(name="BOOKINGS")
+// A user's bookings are listed a page at a time, in id order, starting after the last id of the previous page. The
+// index covers that query, so each page is a range scan however many bookings the user has.
+@Table(name="BOOKINGS",
+		indexes = @Index(name = "IDX_BOOKINGS_USER_STATUS_ID", columnList = "USER_ID, STATUS, ID"))
+@NamedQueries({
+		@NamedQuery(name = "Booking.findByStatus",
+				query = "select b from Booking b where b.status = :status"),
+		@NamedQuery(name = "Booking.findByUserAndStatusAfter",
+				query = "select b from Booking b where b.user = :user and b.status = :status and b.id > :after order by b.id")
+})
 public class Booking {
 	
 	public enum Status {Soft, Confirmed, Cancelled}
@@ -39,6 +48,10 @@ public class Booking {
 	@ManyToOne
 	@JoinColumn(name="USER_ID")
 	private User user;
+
+	@Enumerated(EnumType.STRING)
+	@Column(name="STATUS")
+	private Status status;
 	
 	@Version
 	@Column(name="VERSION")
@@ -47,6 +60,10 @@ public class Booking {
 	public Booking() {}
 	
 	public Booking(LocalDateTime concertDate, Collection<Seat> seats, Concert concert, User user) {
+		this(concertDate, seats, concert, user, Status.Confirmed);
+	}
+
+	public Booking(LocalDateTime concertDate, Collection<Seat> seats, Concert concert, User user, Status status) {
 		// Initialise the Booking.
 		date = concertDate;
 		
@@ -55,6 +72,7 @@ public class Booking {
 		
 		this.concert = concert;
 		this.user = user;
+		this.status = status;
 		
 		// Record the current time for creating the Booking.
 		this.timeCreated = LocalDateTime.now();
@@ -84,6 +102,24 @@ public class Booking {
 		return user;
 	}
 
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * Turns a soft hold into a confirmed booking.
+	 */
+	public void confirm() {
+		this.status = Status.Confirmed;
+	}
+
+	/**
+	 * Cancels the booking. Its seats are not released - that's up to the caller.
+	 */
+	public void cancel() {
+		this.status = Status.Cancelled;
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (!(obj instanceof Concert))
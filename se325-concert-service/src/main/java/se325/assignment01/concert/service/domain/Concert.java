@@ -9,9 +9,19 @@ import javax.persistence.*;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
 
 @Entity
 @Table(name = "CONCERTS")
+// Concerts (like performers) are reference data that the service never changes, so they're immutable and can be
+// cached read-only.
+@Immutable
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
+@NamedQuery(name = "Concert.findAllWithDetails",
+        query = "select distinct c from Concert c left join fetch c.dates left join fetch c.performers")
 public class Concert implements Comparable<Concert> {
 
     @Id
@@ -29,6 +39,8 @@ public class Concert implements Comparable<Concert> {
     private String blurb;
 
     @ElementCollection
+    @Immutable
+    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
     @CollectionTable(
             name = "CONCERT_DATES",
             joinColumns = @JoinColumn(name = "CONCERT_ID"))
@@ -36,6 +48,8 @@ public class Concert implements Comparable<Concert> {
     private Set<LocalDateTime> dates = new HashSet<>();
 
     @ManyToMany
+    @Immutable
+    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
     @JoinTable(
             name = "CONCERT_PERFORMER",
             joinColumns = @JoinColumn(name = "CONCERT_ID"),
@@ -10,9 +10,17 @@ import se325.assignment01.concert.common.types.Genre;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
 
 @Entity
 @Table(name = "PERFORMERS")
+@Immutable
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
+@NamedQuery(name = "Performer.findAll",
+        query = "select p from Performer p order by p.id")
 public class Performer {
 
     @Id
@@ -5,12 +5,34 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Objects;
 
+// Seats belong to a date rather than a concert (every concert on a date shares them), so a seat is identified by its
+// date and label. The index covers every seat query: by date, by date and booking status, and by labels within those.
 @Entity
-@Table(name="SEATS")
+@Table(name="SEATS",
+		uniqueConstraints = @UniqueConstraint(name = "UK_SEATS_DATE_LABEL", columnNames = {"DATE", "LABEL"}),
+		indexes = @Index(name = "IDX_SEATS_DATE_BOOKED_LABEL", columnList = "DATE, IS_BOOKED, LABEL"))
+@NamedQueries({
+		@NamedQuery(name = "Seat.findByDate",
+				query = "select s from Seat s where s.date = :date"),
+		@NamedQuery(name = "Seat.findByDateAndStatus",
+				query = "select s from Seat s where s.date = :date and s.isBooked = :isBooked"),
+		@NamedQuery(name = "Seat.findUnbookedByDateAndLabels",
+				query = "select s from Seat s where s.date = :date and s.isBooked = false and s.label in (:labels)"),
+		@NamedQuery(name = "Seat.findBookedDatesAndLabels",
+				query = "select s.date, s.label from Seat s where s.isBooked = true")
+})
+// Books all of the given seats for a booking in a single statement, but only the ones that are still free. Whether the
+// booking succeeded is decided by the number of rows updated. Native, because BOOKING_ID isn't mapped on this side.
+@NamedNativeQuery(name = "Seat.bookUnbookedByDateAndLabels",
+		query = "update SEATS set IS_BOOKED = true, BOOKING_ID = :bookingId, VERSION = VERSION + 1 " +
+				"where DATE = :date and IS_BOOKED = false and LABEL in (:labels)")
 public class Seat {
 
+	// Ids are handed out by a pooled sequence, so that thousands of seats can be inserted in JDBC batches without a
+	// round trip to the database for each id.
 	@Id
-	@GeneratedValue/*(strategy = GenerationType.IDENTITY)*/
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "SEAT_ID_GENERATOR")
+	@SequenceGenerator(name = "SEAT_ID_GENERATOR", sequenceName = "SEAT_ID_SEQ", allocationSize = 1000)
 	@Column(name="ID")
 	private Long id;
 
@@ -63,6 +85,10 @@ public class Seat {
 		this.isBooked = true;
 	}
 
+	public void unbook() {
+		this.isBooked = false;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
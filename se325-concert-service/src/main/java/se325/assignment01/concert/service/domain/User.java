@@ -7,6 +7,12 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 
 @Entity
 @Table(name = "USERS")
+@NamedQueries({
+        @NamedQuery(name = "User.findByCredentials",
+                query = "select u from User u where u.username = :username and u.password = :password"),
+        @NamedQuery(name = "User.findByUuid",
+                query = "select u from User u where u.uuid = :uuid")
+})
 public class User {
 
     @Id
@@ -0,0 +1,81 @@
+package se325.assignment01.concert.service.jaxrs;
+
+import se325.assignment01.concert.service.services.RequestMetrics;
+
+import javax.ws.rs.HttpMethod;
+import javax.ws.rs.Path;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times every request to a resource method, and records it in {@link RequestMetrics} against the method's endpoint,
+ * i.e. its HTTP method and path template (e.g. "GET /concert-service/concerts/{id}"), so that requests for different
+ * concerts, dates etc. are counted together. Requests that don't match any resource method aren't recorded.
+ * <p>
+ * For asynchronous resource methods, the time runs until the response is sent - e.g. when a subscription is notified,
+ * or when a stream of events is opened.
+ */
+public class MetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final String START_PROPERTY = MetricsFilter.class.getName() + ".start";
+
+    private static final Map<Method, String> ENDPOINTS = new ConcurrentHashMap<>();
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        requestContext.setProperty(START_PROPERTY, System.nanoTime());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object start = requestContext.getProperty(START_PROPERTY);
+        Method method = resourceInfo.getResourceMethod();
+        if (start == null || method == null) {
+            return;
+        }
+
+        String endpoint = ENDPOINTS.computeIfAbsent(method,
+                m -> getEndpoint(resourceInfo.getResourceClass(), m, requestContext.getMethod()));
+        RequestMetrics.instance().recordRequest(endpoint, responseContext.getStatus(), System.nanoTime() - (Long) start);
+    }
+
+    /**
+     * Gets the name of the endpoint served by the given resource method, e.g. "GET /concert-service/concerts/{id}".
+     */
+    private static String getEndpoint(Class<?> resourceClass, Method method, String requestMethod) {
+        String httpMethod = requestMethod;
+        for (Annotation annotation : method.getAnnotations()) {
+            HttpMethod designator = annotation.annotationType().getAnnotation(HttpMethod.class);
+            if (designator != null) {
+                httpMethod = designator.value();
+            }
+        }
+
+        StringBuilder path = new StringBuilder();
+        appendPath(path, resourceClass.getAnnotation(Path.class));
+        appendPath(path, method.getAnnotation(Path.class));
+        return httpMethod + " " + (path.length() == 0 ? "/" : path.toString());
+    }
+
+    private static void appendPath(StringBuilder path, Path annotation) {
+        if (annotation == null) {
+            return;
+        }
+        String value = annotation.value();
+        if (!value.startsWith("/")) {
+            path.append('/');
+        }
+        path.append(value.endsWith("/") ? value.substring(0, value.length() - 1) : value);
+    }
+}
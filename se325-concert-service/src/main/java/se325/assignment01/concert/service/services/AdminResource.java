@@ -0,0 +1,166 @@
+package se325.assignment01.concert.service.services;
+
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import se325.assignment01.concert.service.util.ConcertUtils;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Operational endpoints for inspecting the running service. None of these are needed by clients of the concert service.
+ */
+@Path("/concert-service-admin")
+@Produces(MediaType.APPLICATION_JSON)
+public class AdminResource {
+
+    /**
+     * Reports whether the service has finished starting up and is ready to take requests.
+     *
+     * @return a 200 OK response once the service is ready, or a 503 while it's starting up or shutting down.
+     */
+    @GET
+    @Path("/ready")
+    public Response getReadiness() {
+        boolean ready = ServiceLifecycleListener.isReady();
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("ready", ready);
+        return Response.status(ready ? Response.Status.OK : Response.Status.SERVICE_UNAVAILABLE).entity(status).build();
+    }
+
+    /**
+     * Gets hit / miss statistics for the catalogue cache.
+     */
+    @GET
+    @Path("/cache/catalogue")
+    public Map<String, Object> getCatalogueCacheStats() {
+        CatalogueCache cache = CatalogueCache.instance();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", cache.getHits());
+        stats.put("misses", cache.getMisses());
+        return stats;
+    }
+
+    /**
+     * Gets statistics for the database connection pool.
+     */
+    @GET
+    @Path("/pool")
+    public Map<String, Object> getPoolStats() {
+        PoolMetrics pool = PoolMetrics.instance();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxSize", pool.getMaxSize());
+        stats.put("active", pool.getActive());
+        stats.put("idle", pool.getIdle());
+        stats.put("waiters", pool.getWaiters());
+        stats.put("acquisitions", pool.getAcquisitions());
+        stats.put("timeouts", pool.getTimeouts());
+        stats.put("meanAcquireMicros", pool.getMeanAcquireMicros());
+        stats.put("maxAcquireMicros", pool.getMaxAcquireMicros());
+        stats.put("meanUsageMillis", pool.getMeanUsageMillis());
+        return stats;
+    }
+
+    /**
+     * Gets statistics for the background task executor.
+     */
+    @GET
+    @Path("/executor")
+    public Map<String, Object> getExecutorStats() {
+        BackgroundExecutor executor = BackgroundExecutor.instance();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("strategy", executor.getStrategy());
+        stats.put("pending", executor.getPending());
+        stats.put("submitted", executor.getSubmitted());
+        stats.put("completed", executor.getCompleted());
+        stats.put("failed", executor.getFailed());
+        stats.put("rejected", executor.getRejected());
+        return stats;
+    }
+
+    /**
+     * Gets statistics for concert info subscriptions: how many are waiting now, and how many have ended without being
+     * notified.
+     */
+    @GET
+    @Path("/subscriptions")
+    public Map<String, Object> getSubscriptionStats() {
+        SubscriptionRegistry subscriptions = SubscriptionRegistry.instance();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("parked", subscriptions.size());
+        stats.put("expired", subscriptions.getExpired());
+        stats.put("disconnected", subscriptions.getDisconnected());
+        stats.put("rejected", subscriptions.getRejected());
+        return stats;
+    }
+
+    /**
+     * Gets statistics for the booking lanes: which booking strategy is in use, how many bookings are waiting, and how
+     * many transactions have been needed to commit the bookings made so far.
+     */
+    @GET
+    @Path("/bookings")
+    public Map<String, Object> getBookingStats() {
+        // Don't start the lanes just to report on them.
+        BookingLanes lanes = BookingLanes.instanceIfStarted();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("strategy", Config.BOOKING_STRATEGY);
+        stats.put("pending", lanes == null ? 0 : lanes.getPending());
+        stats.put("committed", lanes == null ? 0 : lanes.getCommitted());
+        stats.put("batches", lanes == null ? 0 : lanes.getBatches());
+        stats.put("retried", lanes == null ? 0 : lanes.getRetried());
+        return stats;
+    }
+
+    /**
+     * Gets hit / miss statistics for each region of the second-level (entity) cache, along with overall totals.
+     */
+    @GET
+    @Path("/cache/second-level")
+    public Map<String, Object> getSecondLevelCacheStats() {
+        Statistics statistics = PersistenceManager.instance().getStatistics();
+
+        Map<String, Object> regions = new TreeMap<>();
+        for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics region = statistics.getDomainDataRegionStatistics(regionName);
+
+            Map<String, Object> regionStats = new LinkedHashMap<>();
+            regionStats.put("hits", region.getHitCount());
+            regionStats.put("misses", region.getMissCount());
+            regionStats.put("puts", region.getPutCount());
+            regions.put(regionName, regionStats);
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", statistics.getSecondLevelCacheHitCount());
+        stats.put("misses", statistics.getSecondLevelCacheMissCount());
+        stats.put("puts", statistics.getSecondLevelCachePutCount());
+        stats.put("regions", regions);
+        return stats;
+    }
+
+    /**
+     * Gets timings for the most recent (re)initialisation of concert seat data.
+     */
+    @GET
+    @Path("/startup")
+    public Map<String, Object> getStartupStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("seatInitMillis", ConcertUtils.getLastInitDurationMillis());
+        stats.put("seatCount", ConcertUtils.getLastInitSeatCount());
+        return stats;
+    }
+
+}
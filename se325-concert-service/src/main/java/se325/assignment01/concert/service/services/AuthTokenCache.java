@@ -0,0 +1,115 @@
+package se325.assignment01.concert.service.services;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Singleton cache mapping auth tokens to the ids of the users they were issued to, so that authenticated requests
+ * don't need to query the USERS table.
+ * <p>
+ * Entries expire {@link Config#AUTH_TOKEN_TTL_SECONDS} after they're added, and at most
+ * {@link Config#AUTH_TOKEN_CACHE_SIZE} are kept, with the oldest being evicted first. A user only ever has one valid
+ * token, so adding a token for a user evicts any token previously cached for them.
+ */
+public class AuthTokenCache {
+
+    private static volatile AuthTokenCache _instance = null;
+
+    private final long ttlNanos;
+    private final int maxSize;
+
+    // Insertion ordered, so the eldest entry is always the next to expire.
+    private final LinkedHashMap<String, Entry> usersByToken = new LinkedHashMap<>();
+    private final Map<Long, String> tokensByUser = new HashMap<>();
+
+    protected AuthTokenCache(long ttlSeconds, int maxSize) {
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+        this.maxSize = maxSize;
+    }
+
+    public static AuthTokenCache instance() {
+        if (_instance == null) {
+            synchronized (AuthTokenCache.class) {
+                if (_instance == null) {
+                    _instance = new AuthTokenCache(Config.AUTH_TOKEN_TTL_SECONDS, Config.AUTH_TOKEN_CACHE_SIZE);
+                }
+            }
+        }
+        return _instance;
+    }
+
+    /**
+     * Gets the id of the user the given token belongs to, or null if the token isn't cached (or has expired).
+     */
+    public synchronized Long get(String token) {
+        evictExpired(System.nanoTime());
+
+        Entry entry = usersByToken.get(token);
+        return entry == null ? null : entry.userId;
+    }
+
+    /**
+     * Records a token that has just been issued to the given user, replacing their previous token (if any).
+     */
+    public synchronized void putIssued(String token, long userId) {
+        String previous = tokensByUser.remove(userId);
+        if (previous != null) {
+            usersByToken.remove(previous);
+        }
+        add(token, userId);
+    }
+
+    /**
+     * Records a token that was looked up in the database. This is ignored if a different token has been issued to the
+     * user in the meantime, so that a slow lookup can't bring back a token that a new login has just replaced.
+     */
+    public synchronized void putLookedUp(String token, long userId) {
+        String current = tokensByUser.get(userId);
+        if (current == null) {
+            add(token, userId);
+        }
+    }
+
+    /**
+     * Forgets all tokens.
+     */
+    public synchronized void clear() {
+        usersByToken.clear();
+        tokensByUser.clear();
+    }
+
+    private void add(String token, long userId) {
+        usersByToken.put(token, new Entry(userId, System.nanoTime() + ttlNanos));
+        tokensByUser.put(userId, token);
+
+        if (usersByToken.size() > maxSize) {
+            Iterator<Map.Entry<String, Entry>> eldest = usersByToken.entrySet().iterator();
+            tokensByUser.remove(eldest.next().getValue().userId);
+            eldest.remove();
+        }
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Map.Entry<String, Entry>> entries = usersByToken.entrySet().iterator();
+        while (entries.hasNext()) {
+            Entry entry = entries.next().getValue();
+            if (entry.expiresAt - now > 0) {
+                break;
+            }
+            tokensByUser.remove(entry.userId);
+            entries.remove();
+        }
+    }
+
+    private static class Entry {
+        private final long userId;
+        private final long expiresAt;
+
+        Entry(long userId, long expiresAt) {
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package se325.assignment01.concert.service.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Singleton executor for work that happens in the background of a request, such as notifying subscribers after a
+ * booking.
+ * <p>
+ * The underlying executor is chosen by {@link Config#EXECUTOR_STRATEGY}. Whichever is used, at most
+ * {@link Config#EXECUTOR_QUEUE_CAPACITY} tasks may be waiting or running at once - beyond that, tasks are rejected
+ * (and counted) rather than queued without limit.
+ * <p>
+ * {@link #shutdown()} is called by {@link ServiceLifecycleListener} when the service is undeployed.
+ */
+public class BackgroundExecutor {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(BackgroundExecutor.class);
+
+    private static volatile BackgroundExecutor _instance = null;
+
+    private final String strategy;
+    private final ExecutorService executor;
+    private final Semaphore permits = new Semaphore(Config.EXECUTOR_QUEUE_CAPACITY);
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    protected BackgroundExecutor() {
+        ExecutorService virtual = "virtual".equals(Config.EXECUTOR_STRATEGY) ? newVirtualThreadPerTaskExecutor() : null;
+
+        if (virtual != null) {
+            strategy = "virtual";
+            executor = virtual;
+        } else if ("work-stealing".equals(Config.EXECUTOR_STRATEGY) || "virtual".equals(Config.EXECUTOR_STRATEGY)) {
+            strategy = "work-stealing";
+            executor = Executors.newWorkStealingPool(Config.EXECUTOR_THREADS);
+        } else {
+            if (!"fixed".equals(Config.EXECUTOR_STRATEGY)) {
+                LOGGER.warn("Unknown executor strategy '" + Config.EXECUTOR_STRATEGY + "', using 'fixed'");
+            }
+            strategy = "fixed";
+            executor = Executors.newFixedThreadPool(Config.EXECUTOR_THREADS, namedDaemonThreads());
+        }
+
+        LOGGER.info("Using '" + strategy + "' executor for background tasks");
+    }
+
+    public static BackgroundExecutor instance() {
+        if (_instance == null) {
+            synchronized (BackgroundExecutor.class) {
+                if (_instance == null) {
+                    _instance = new BackgroundExecutor();
+                }
+            }
+        }
+        return _instance;
+    }
+
+    /**
+     * Runs the given task in the background, unless too many tasks are already waiting or running, or the executor has
+     * been shut down.
+     *
+     * @return true if the task was accepted, false if it was rejected
+     */
+    public boolean execute(Runnable task) {
+        if (!permits.tryAcquire()) {
+            rejected.incrementAndGet();
+            LOGGER.warn("execute(): Rejected task, " + Config.EXECUTOR_QUEUE_CAPACITY + " tasks already pending");
+            return false;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                    completed.incrementAndGet();
+                } catch (RuntimeException e) {
+                    failed.incrementAndGet();
+                    LOGGER.error("execute(): Background task failed", e);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            rejected.incrementAndGet();
+            LOGGER.warn("execute(): Rejected task, executor is shut down");
+            return false;
+        }
+
+        submitted.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Stops accepting tasks, and waits up to {@link Config#EXECUTOR_SHUTDOWN_SECONDS} for pending ones to finish before
+     * interrupting them.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(Config.EXECUTOR_SHUTDOWN_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warn("shutdown(): Tasks still running after " + Config.EXECUTOR_SHUTDOWN_SECONDS + "s, interrupting");
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the executor strategy actually in use, which may differ from the one configured if it wasn't available.
+     */
+    public String getStrategy() {
+        return strategy;
+    }
+
+    public long getSubmitted() {
+        return submitted.get();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Gets the number of accepted tasks that are waiting or running.
+     */
+    public int getPending() {
+        return Config.EXECUTOR_QUEUE_CAPACITY - permits.availablePermits();
+    }
+
+    /**
+     * Creates a virtual-thread-per-task executor, or returns null if this Java version doesn't support them. Looked up
+     * reflectively so that the service still compiles and runs on Java 11.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            LOGGER.warn("Virtual threads aren't available on Java " + System.getProperty("java.version") +
+                    ", falling back to 'work-stealing'");
+            return null;
+        }
+    }
+
+    private static ThreadFactory namedDaemonThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, "background-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,392 @@
+package se325.assignment01.concert.service.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.service.domain.Booking;
+import se325.assignment01.concert.service.domain.User;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Singleton pipeline that writes bookings to the database, used by the "lanes" booking strategy (see
+ * {@link Config#BOOKING_STRATEGY}).
+ * <p>
+ * Each show (concert / date pair) is assigned to one of {@link Config#BOOKING_LANES} lanes, and each lane has a queue
+ * and a single thread that takes bookings off it. Because only that thread ever books seats for the show, bookings are
+ * decided strictly in arrival order against the {@link SeatInventory}, and two bookings for the same show never race
+ * each other into the database. Whatever has queued up while the lane was busy is decided together and committed in a
+ * single transaction (up to {@link Config#BOOKING_BATCH_SIZE} at a time), so a burst of bookings costs one commit
+ * rather than one each. Shows in different lanes are written in parallel.
+ * <p>
+ * If a batch fails to commit, its bookings are retried one at a time, so that one bad booking can't sink the others.
+ */
+public class BookingLanes {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(BookingLanes.class);
+
+    private static volatile BookingLanes _instance = null;
+
+    /**
+     * The outcome of a booking.
+     */
+    public enum Result {
+        /**
+         * The booking has been committed.
+         */
+        BOOKED,
+
+        /**
+         * At least one requested seat was already taken (or doesn't exist). Nothing was booked.
+         */
+        CONFLICT,
+
+        /**
+         * The concert isn't scheduled on the requested date. Nothing was booked.
+         */
+        UNKNOWN_SHOW,
+
+        /**
+         * The show's lane is full. Nothing was booked, and the booking can be tried again later.
+         */
+        BUSY
+    }
+
+    private final Lane[] lanes;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+
+    protected BookingLanes() {
+        lanes = new Lane[Math.max(1, Config.BOOKING_LANES)];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane(i);
+        }
+    }
+
+    public static BookingLanes instance() {
+        if (_instance == null) {
+            synchronized (BookingLanes.class) {
+                if (_instance == null) {
+                    _instance = new BookingLanes();
+                }
+            }
+        }
+        return _instance;
+    }
+
+    /**
+     * Gets the lanes if they've been started, or null if they haven't (e.g. because the "direct" booking strategy is in
+     * use). Unlike {@link #instance()}, this never starts them.
+     */
+    public static BookingLanes instanceIfStarted() {
+        return _instance;
+    }
+
+    /**
+     * Hands the given seats to their show's lane to be booked.
+     * <p>
+     * The booking goes ahead whether or not anyone is still waiting for it, so a caller that gives up waiting must still
+     * deal with the booking if it's made.
+     *
+     * @param userId     the id of the user making the booking
+     * @param concertId  the concert id
+     * @param date       the concert date
+     * @param seatLabels the labels of the seats to book
+     * @param status     the status of the new booking
+     * @return a future holding the outcome (along with the new booking's id if it was made), which completes once the
+     * booking has been decided (and if successful, committed). It completes exceptionally if the lane fails.
+     */
+    public CompletableFuture<Outcome> book(long userId, long concertId, LocalDateTime date, List<String> seatLabels,
+                                           Booking.Status status) {
+        return submit(new Request(userId, concertId, date, seatLabels, status, false));
+    }
+
+    /**
+     * Like {@link #book(long, long, LocalDateTime, List, Booking.Status)}, but for seats that the caller has already
+     * claimed in the {@link SeatInventory}. The seats are released again if the booking isn't made.
+     */
+    public CompletableFuture<Outcome> bookClaimed(long userId, long concertId, LocalDateTime date,
+                                                  List<String> seatLabels, Booking.Status status) {
+        return submit(new Request(userId, concertId, date, seatLabels, status, true));
+    }
+
+    private CompletableFuture<Outcome> submit(Request request) {
+        Lane lane = lanes[Math.floorMod(new ShowKey(request.concertId, request.date).hashCode(), lanes.length)];
+        if (!lane.queue.offer(request)) {
+            request.complete(Result.BUSY, null);
+        }
+
+        // A copy, so that callers can't complete the lane's own future.
+        return request.outcome.copy();
+    }
+
+    /**
+     * Gets the number of transactions the lanes have committed (or tried to), including retries.
+     */
+    public long getBatches() {
+        return batches.sum();
+    }
+
+    /**
+     * Gets the number of bookings the lanes have committed.
+     */
+    public long getCommitted() {
+        return committed.sum();
+    }
+
+    /**
+     * Gets the number of bookings that had to be retried on their own after their batch failed to commit.
+     */
+    public long getRetried() {
+        return retried.sum();
+    }
+
+    /**
+     * Gets the number of bookings currently waiting in all lanes.
+     */
+    public int getPending() {
+        int pending = 0;
+        for (Lane lane : lanes) {
+            pending += lane.queue.size();
+        }
+        return pending;
+    }
+
+    /**
+     * Stops all lanes. Bookings that are still waiting are turned away as {@link Result#BUSY}, and any seats claimed
+     * for them are released.
+     */
+    public void shutdown() {
+        for (Lane lane : lanes) {
+            lane.thread.shutdownNow();
+            List<Request> abandoned = new ArrayList<>();
+            lane.queue.drainTo(abandoned);
+            abandoned.forEach(request -> request.complete(Result.BUSY, null));
+        }
+    }
+
+    /**
+     * Decides and commits a batch of bookings, in order.
+     */
+    private void process(List<Request> batch) {
+        SeatInventory inventory = SeatInventory.instance();
+
+        // Claim the seats in memory first (unless the caller already has). Requests for seats that are already taken
+        // (including by an earlier request in this batch) are turned away without going near the database.
+        List<Request> claimed = new ArrayList<>();
+        for (Request request : batch) {
+            if (request.claimed) {
+                claimed.add(request);
+                continue;
+            }
+            switch (inventory.claim(request.concertId, request.date, request.seatLabels)) {
+                case CLAIMED:
+                    request.holdsClaim = true;
+                    claimed.add(request);
+                    break;
+                case CONFLICT:
+                    request.complete(Result.CONFLICT, null);
+                    break;
+                case UNKNOWN_SHOW:
+                    request.complete(Result.UNKNOWN_SHOW, null);
+                    break;
+            }
+        }
+
+        if (claimed.isEmpty() || commit(claimed)) {
+            return;
+        }
+
+        // Something in the batch stopped it from committing. Try again one at a time, so the rest can still go ahead.
+        // Bookings that fail on their own can't be made at all.
+        for (Request request : claimed) {
+            retried.increment();
+            if (!commit(Collections.singletonList(request))) {
+                request.complete(Result.CONFLICT, null);
+            }
+        }
+    }
+
+    /**
+     * Writes the given claimed bookings in a single transaction, completing every request if it commits. If the
+     * transaction can't commit, or the database disagrees with the inventory about any booking's seats, the whole
+     * transaction is rolled back and false is returned without completing any of them.
+     * <p>
+     * Package-private so that tests can make it fail.
+     */
+    boolean commit(List<Request> requests) {
+        batches.increment();
+
+        List<Booking> bookings = new ArrayList<>();
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            em.getTransaction().begin();
+
+            for (Request request : requests) {
+                Booking booking = BookingWriter.write(em, request.concertId, request.date, request.seatLabels,
+                        em.getReference(User.class, request.userId), request.status);
+                if (booking == null) {
+                    em.getTransaction().rollback();
+                    return false;
+                }
+                bookings.add(booking);
+            }
+
+            em.getTransaction().commit();
+
+        } catch (RuntimeException e) {
+            LOGGER.warn("commit(): Batch of " + requests.size() + " bookings failed to commit", e);
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            return false;
+
+        } finally {
+            em.close();
+        }
+
+        for (int i = 0; i < requests.size(); i++) {
+            committed.increment();
+            requests.get(i).complete(Result.BOOKED, bookings.get(i).getId());
+        }
+        return true;
+    }
+
+    private static void release(Request request) {
+        SeatInventory.instance().release(request.concertId, request.date, request.seatLabels);
+        SeatEvents.instance().publishReleased(request.concertId, request.date, request.seatLabels);
+    }
+
+    /**
+     * The outcome of a booking: its {@link Result}, and the id of the new booking if one was made.
+     */
+    public static class Outcome {
+
+        private final Result result;
+        private final Long bookingId;
+
+        Outcome(Result result, Long bookingId) {
+            this.result = result;
+            this.bookingId = bookingId;
+        }
+
+        public Result getResult() {
+            return result;
+        }
+
+        public Long getBookingId() {
+            return bookingId;
+        }
+    }
+
+    static class Request {
+        private final long userId;
+        private final long concertId;
+        private final LocalDateTime date;
+        private final List<String> seatLabels;
+        private final Booking.Status status;
+        private final boolean claimed;
+        private final CompletableFuture<Outcome> outcome = new CompletableFuture<>();
+
+        // Whether the request's seats are claimed in the SeatInventory, and so must be released if it isn't booked.
+        // Only touched by the lane's thread, or by whoever has the request before it reaches the lane.
+        private boolean holdsClaim;
+
+        Request(long userId, long concertId, LocalDateTime date, List<String> seatLabels, Booking.Status status,
+                boolean claimed) {
+            this.userId = userId;
+            this.concertId = concertId;
+            this.date = date;
+            this.seatLabels = seatLabels;
+            this.status = status;
+            this.claimed = claimed;
+            this.holdsClaim = claimed;
+        }
+
+        /**
+         * Completes the request, unless it's already complete. If it wasn't booked, its seats are released first, so
+         * that they're free again by the time the caller hears about it.
+         */
+        void complete(Result result, Long bookingId) {
+            if (outcome.isDone()) {
+                return;
+            }
+            if (result != Result.BOOKED) {
+                releaseClaim();
+            }
+            outcome.complete(new Outcome(result, bookingId));
+        }
+
+        /**
+         * Completes the request with an error, unless it's already complete, releasing its seats first.
+         */
+        void fail(Throwable error) {
+            if (outcome.isDone()) {
+                return;
+            }
+            releaseClaim();
+            outcome.completeExceptionally(error);
+        }
+
+        private void releaseClaim() {
+            if (holdsClaim) {
+                holdsClaim = false;
+                release(this);
+            }
+        }
+    }
+
+    /**
+     * A queue of bookings, and the single thread that decides and commits them.
+     */
+    private class Lane {
+
+        private final BlockingQueue<Request> queue = new ArrayBlockingQueue<>(Config.BOOKING_LANE_CAPACITY);
+        private final ExecutorService thread;
+
+        Lane(int index) {
+            thread = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "booking-lane-" + index);
+                t.setDaemon(true);
+                return t;
+            });
+            thread.execute(this::run);
+        }
+
+        private void run() {
+            List<Request> batch = new ArrayList<>(Config.BOOKING_BATCH_SIZE);
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    // Wait for a booking, then take whatever else has queued up behind it.
+                    batch.add(queue.take());
+                    queue.drainTo(batch, Config.BOOKING_BATCH_SIZE - 1);
+
+                    process(batch);
+
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+
+                } catch (RuntimeException e) {
+                    LOGGER.error("run(): Unexpected error processing bookings", e);
+                    batch.forEach(request -> request.fail(e));
+
+                } finally {
+                    // Anything not completed by now never will be.
+                    batch.forEach(request -> request.complete(Result.BUSY, null));
+                    batch.clear();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package se325.assignment01.concert.service.services;
+
+import org.hibernate.query.NativeQuery;
+import se325.assignment01.concert.service.domain.Booking;
+import se325.assignment01.concert.service.domain.Concert;
+import se325.assignment01.concert.service.domain.Seat;
+import se325.assignment01.concert.service.domain.User;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes new bookings to the database, marking their seats as booked in whichever way
+ * {@link Config#BOOKING_SEAT_UPDATE} asks for:
+ * <ul>
+ *     <li>"entity": the unbooked seats are loaded, counted, and updated one entity at a time. Each seat gets its own
+ *     versioned UPDATE when the transaction is flushed.</li>
+ *     <li>"conditional": the booking is inserted first, and then a single UPDATE books whichever of its seats are still
+ *     free, pointing them at the booking. The booking succeeds only if every seat was updated. No seats are loaded, so
+ *     each booking costs one INSERT and one UPDATE however many seats it has.</li>
+ * </ul>
+ */
+public class BookingWriter {
+
+    private BookingWriter() {}
+
+    /**
+     * Books the given seats as part of the given EntityManager's current transaction.
+     *
+     * @return the new booking, or null if any of the seats aren't free. In that case the transaction may already have
+     * changed some seats, so it must be rolled back.
+     */
+    public static Booking write(EntityManager em, long concertId, LocalDateTime date, List<String> seatLabels,
+                                User user, Booking.Status status) {
+        if ("conditional".equals(Config.BOOKING_SEAT_UPDATE)) {
+            return writeConditional(em, concertId, date, seatLabels, user, status);
+        }
+        return writeEntities(em, concertId, date, seatLabels, user, status);
+    }
+
+    private static Booking writeEntities(EntityManager em, long concertId, LocalDateTime date, List<String> seatLabels,
+                                         User user, Booking.Status status) {
+        // Get all unbooked seats with matching labels and dates
+        List<Seat> domainSeats = em
+                .createNamedQuery("Seat.findUnbookedByDateAndLabels", Seat.class)
+                .setParameter("date", date)
+                .setParameter("labels", seatLabels)
+                .getResultList();
+
+        if (domainSeats.size() != seatLabels.size()) {
+            return null;
+        }
+
+        // Update the booked status of all the seats
+        domainSeats.forEach(Seat::book);
+
+        Booking booking = new Booking(date, domainSeats, em.find(Concert.class, concertId), user, status);
+        em.persist(booking);
+        return booking;
+    }
+
+    // Package-private so that tests can use it whatever Config#BOOKING_SEAT_UPDATE says.
+    static Booking writeConditional(EntityManager em, long concertId, LocalDateTime date, List<String> seatLabels,
+                                    User user, Booking.Status status) {
+        // Bookings have identity keys, so this inserts the booking straight away, giving the seats something to point to.
+        Booking booking = new Booking(date, Collections.emptyList(), em.find(Concert.class, concertId), user, status);
+        em.persist(booking);
+
+        int numBooked = em.createNamedQuery("Seat.bookUnbookedByDateAndLabels")
+                .setParameter("bookingId", booking.getId())
+                .setParameter("date", date)
+                .setParameter("labels", seatLabels)
+                .unwrap(NativeQuery.class)
+                // Otherwise Hibernate can't tell which tables the statement touches, and clears the whole second-level cache.
+                .addSynchronizedEntityClass(Seat.class)
+                .executeUpdate();
+
+        return numBooked == seatLabels.size() ? booking : null;
+    }
+}
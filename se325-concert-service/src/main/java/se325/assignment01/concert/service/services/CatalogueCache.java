@@ -0,0 +1,207 @@
+package se325.assignment01.concert.service.services;
+
+import org.hibernate.jpa.QueryHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.common.dto.ConcertDTO;
+import se325.assignment01.concert.common.dto.ConcertSummaryDTO;
+import se325.assignment01.concert.common.dto.PerformerDTO;
+import se325.assignment01.concert.service.domain.Concert;
+import se325.assignment01.concert.service.domain.Performer;
+import se325.assignment01.concert.service.mapper.ConcertMapper;
+import se325.assignment01.concert.service.mapper.PerformerMapper;
+
+import javax.persistence.EntityManager;
+import javax.ws.rs.core.EntityTag;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Singleton read-through cache of the concert / performer catalogue, held as ready-to-serialize DTOs.
+ * <p>
+ * Catalogue data is loaded by db-init.sql and effectively never changes, so the whole catalogue is loaded from the
+ * database on first use and then served from memory until {@link #invalidate()} is called. Anything that changes
+ * concerts or performers must call {@link #invalidate()} afterwards.
+ * <p>
+ * Each load of the catalogue gets a new strong {@link EntityTag}, so clients can revalidate with If-None-Match and
+ * receive a 304 while their copy is still current.
+ * <p>
+ * Concerts and performers are kept in id order, and indexed by id, so that they can be listed a page at a time.
+ */
+public class CatalogueCache {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(CatalogueCache.class);
+
+    private static volatile CatalogueCache _instance = null;
+
+    // Distinguishes ETags issued by this instance of the service from those issued by any previous one.
+    private final String epoch = Long.toHexString(System.currentTimeMillis());
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long generation = 0;
+
+    private volatile Catalogue catalogue = null;
+
+    protected CatalogueCache() {
+    }
+
+    public static CatalogueCache instance() {
+        if (_instance == null) {
+            synchronized (CatalogueCache.class) {
+                if (_instance == null) {
+                    _instance = new CatalogueCache();
+                }
+            }
+        }
+        return _instance;
+    }
+
+    /**
+     * Gets the catalogue, loading it from the database if it isn't already cached.
+     */
+    public Catalogue get() {
+        Catalogue current = catalogue;
+        if (current != null) {
+            hits.incrementAndGet();
+            return current;
+        }
+
+        misses.incrementAndGet();
+        return load();
+    }
+
+    /**
+     * Discards the cached catalogue. The next call to {@link #get()} will reload it, with a new ETag.
+     */
+    public synchronized void invalidate() {
+        catalogue = null;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private synchronized Catalogue load() {
+        // Someone else may have loaded it while we were waiting.
+        if (catalogue != null) {
+            return catalogue;
+        }
+
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            em.getTransaction().begin();
+
+            // Fetch each concert's dates and performers in the same statement, rather than one query per concert.
+            List<Concert> domainConcerts = new ArrayList<>(em.createNamedQuery("Concert.findAllWithDetails", Concert.class)
+                    .setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false)
+                    .getResultList());
+            domainConcerts.sort(Comparator.comparing(Concert::getId));
+            List<Performer> domainPerformers = em.createNamedQuery("Performer.findAll", Performer.class)
+                    .getResultList();
+
+            generation++;
+            catalogue = RequestMetrics.instance().timeMapping(() -> new Catalogue(
+                    new EntityTag(epoch + "-" + generation),
+                    domainConcerts.stream().map(ConcertMapper::toDTO).collect(Collectors.toList()),
+                    domainConcerts.stream().map(ConcertMapper::toSummaryDTO).collect(Collectors.toList()),
+                    domainPerformers.stream().map(PerformerMapper::toDTO).collect(Collectors.toList())));
+
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+
+        LOGGER.debug("load(): Loaded catalogue generation " + generation);
+        return catalogue;
+    }
+
+    /**
+     * An immutable snapshot of the catalogue. The DTOs it contains are shared between requests and must not be modified.
+     */
+    public static class Catalogue {
+
+        private final EntityTag entityTag;
+        private final List<ConcertDTO> concerts;
+        private final List<ConcertSummaryDTO> concertSummaries;
+        private final List<PerformerDTO> performers;
+        private final NavigableMap<Long, ConcertDTO> concertsById = new TreeMap<>();
+        private final NavigableMap<Long, PerformerDTO> performersById = new TreeMap<>();
+
+        Catalogue(EntityTag entityTag, List<ConcertDTO> concerts, List<ConcertSummaryDTO> concertSummaries,
+                  List<PerformerDTO> performers) {
+            this.entityTag = entityTag;
+            this.concerts = Collections.unmodifiableList(concerts);
+            this.concertSummaries = Collections.unmodifiableList(concertSummaries);
+            this.performers = Collections.unmodifiableList(performers);
+
+            concerts.forEach(c -> concertsById.put(c.getId(), c));
+            performers.forEach(p -> performersById.put(p.getId(), p));
+        }
+
+        public EntityTag getEntityTag() {
+            return entityTag;
+        }
+
+        public List<ConcertDTO> getConcerts() {
+            return concerts;
+        }
+
+        /**
+         * Gets up to maxResults concerts whose ids are greater than after, in id order.
+         */
+        public List<ConcertDTO> getConcerts(long after, int maxResults) {
+            return page(concertsById, after, maxResults);
+        }
+
+        public List<ConcertSummaryDTO> getConcertSummaries() {
+            return concertSummaries;
+        }
+
+        public List<PerformerDTO> getPerformers() {
+            return performers;
+        }
+
+        /**
+         * Gets up to maxResults performers whose ids are greater than after, in id order.
+         */
+        public List<PerformerDTO> getPerformers(long after, int maxResults) {
+            return page(performersById, after, maxResults);
+        }
+
+        /**
+         * Gets the concert with the given id, or null if there's no such concert.
+         */
+        public ConcertDTO getConcert(long id) {
+            return concertsById.get(id);
+        }
+
+        /**
+         * Gets the performer with the given id, or null if there's no such performer.
+         */
+        public PerformerDTO getPerformer(long id) {
+            return performersById.get(id);
+        }
+
+        private static <T> List<T> page(NavigableMap<Long, T> byId, long after, int maxResults) {
+            List<T> page = new ArrayList<>(Math.min(maxResults, byId.size()));
+            for (T item : byId.tailMap(after, false).values()) {
+                if (page.size() == maxResults) {
+                    break;
+                }
+                page.add(item);
+            }
+            return page;
+        }
+    }
+}
@@ -1,10 +1,10 @@
 package se325.assignment01.concert.service.services;
 
+import se325.assignment01.concert.service.jaxrs.MetricsFilter;
+
 import javax.ws.rs.ApplicationPath;
 import javax.ws.rs.core.Application;
 
-import se325.assignment01.concert.service.util.ConcertUtils;
-
 import java.util.HashSet;
 import java.util.Set;
 
@@ -17,9 +17,10 @@ public class ConcertApplication extends Application {
     public ConcertApplication() {
         classes.add(TestResource.class);
         classes.add(ConcertResource.class);
+        classes.add(AdminResource.class);
+        classes.add(MetricsResource.class);
+        classes.add(MetricsFilter.class);
         singletons.add(PersistenceManager.instance());
-
-        ConcertUtils.initConcerts();
     }
 
     @Override
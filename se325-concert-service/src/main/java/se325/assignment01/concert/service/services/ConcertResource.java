@@ -7,8 +7,6 @@ import se325.assignment01.concert.common.types.BookingStatus;
 import se325.assignment01.concert.service.domain.*;
 import se325.assignment01.concert.service.jaxrs.LocalDateTimeParam;
 import se325.assignment01.concert.service.mapper.BookingMapper;
-import se325.assignment01.concert.service.mapper.ConcertMapper;
-import se325.assignment01.concert.service.mapper.PerformerMapper;
 import se325.assignment01.concert.service.mapper.SeatMapper;
 import se325.assignment01.concert.service.util.TheatreLayout;
 
@@ -18,15 +16,17 @@ import javax.ws.rs.container.AsyncResponse;
 import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.*;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseEventSink;
 import java.net.URI;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -35,44 +35,99 @@ import java.util.stream.Collectors;
 @Consumes(MediaType.APPLICATION_JSON)
 public class ConcertResource {
 
-    private static final Map<ConcertInfoSubscriptionDTO, AsyncResponse> SUBSCRIPTIONS = new HashMap<>();
-    private static final ExecutorService SUBSCRIPTIONS_THREAD_POOL = Executors.newFixedThreadPool(5);
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
     private static Logger LOGGER = LoggerFactory.getLogger(ConcertResource.class);
 
+    private static final List<PriceBandDTO> PRICE_BANDS = Arrays.stream(TheatreLayout.PRICE_BANDS)
+            .map(band -> new PriceBandDTO(band.name, band.price, band.numRows))
+            .collect(Collectors.toList());
+
     // Concerts
     // ----------------------------------------------------------------------------------------------------------
 
     @GET
     @Path("/concerts/{id}")
-    public ConcertDTO getConcert(@PathParam("id") long id) {
-        EntityManager em = PersistenceManager.instance().createEntityManager();
-        try {
-            em.getTransaction().begin();
-            Concert domainConcert = em.find(Concert.class, id);
-            em.getTransaction().commit();
+    public Response getConcert(@PathParam("id") long id, @Context Request request) {
+        CatalogueCache.Catalogue catalogue = CatalogueCache.instance().get();
 
-            if (domainConcert == null) {
-                throw new NotFoundException(Response.status(Status.NOT_FOUND).build());
-            }
+        ConcertDTO dtoConcert = catalogue.getConcert(id);
+        if (dtoConcert == null) {
+            throw new NotFoundException(Response.status(Status.NOT_FOUND).build());
+        }
 
-            return ConcertMapper.toDTO(domainConcert);
+        return getCatalogueResponse(catalogue, dtoConcert, request);
+    }
 
-        } finally {
-            em.close();
+    /**
+     * Gets the number of booked and remaining seats for each date of a concert. These are read from live counters
+     * rather than counted in the database.
+     *
+     * @return a 200 OK response with the availability of every date of the concert, or a 404 if there's no such concert.
+     */
+    @GET
+    @Path("/concerts/{id}/availability")
+    public Response getConcertAvailability(@PathParam("id") long id) {
+        SeatInventory inventory = SeatInventory.instance();
+
+        List<AvailabilityDTO> dtoAvailability = new ArrayList<>();
+        for (LocalDateTime date : inventory.getDates(id)) {
+            int numBooked = inventory.getNumSeatsBooked(id, date);
+            dtoAvailability.add(new AvailabilityDTO(id, date, numBooked, TheatreLayout.NUM_SEATS_IN_THEATRE - numBooked));
         }
+
+        if (dtoAvailability.isEmpty()) {
+            throw new NotFoundException(Response.status(Status.NOT_FOUND).build());
+        }
+
+        return Response.ok(new GenericEntity<List<AvailabilityDTO>>(dtoAvailability) {
+        }).build();
+    }
+
+    /**
+     * Opens a stream of Server-Sent Events describing changes to the seats for a concert on a particular date. The
+     * first event is a snapshot of all taken seats, and each following event is a delta, sent as bookings are committed
+     * or seats are released. See {@link SeatEvents}.
+     *
+     * @return a text/event-stream of {@link SeatDeltaDTO}s, or a 404 if the concert isn't on that date.
+     */
+    @GET
+    @Path("/concerts/{id}/seats/{date}/events")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void getSeatEvents(@PathParam("id") long id, @PathParam("date") LocalDateTimeParam dateParam,
+                              @Context SseEventSink sink, @Context Sse sse) {
+
+        LocalDateTime date = dateParam.getLocalDateTime();
+        if (!SeatInventory.instance().isScheduled(id, date)) {
+            throw new NotFoundException(Response.status(Status.NOT_FOUND).build());
+        }
+
+        SeatEvents.instance().register(id, date, sink, sse);
     }
 
     /**
-     * Gets all concerts.
+     * Gets all concerts, or a page of them. Pages are in id order. If there are more concerts after a page, the
+     * response has a Link header (rel="next") pointing to the next page.
      *
-     * @return a 200 OK response, with all concerts in the system in the body.
+     * @param limit the maximum number of concerts to return (at most {@link Config#PAGE_MAX_LIMIT}), or null for all
+     * @param after only concerts with ids greater than this are returned
+     * @return a 200 OK response, with all concerts in the system (or the requested page of them) in the body, or a 400
+     * if the limit isn't positive.
      */
     @GET
     @Path("/concerts")
-    public Response getConcerts() {
-        return getConcertsAs(ConcertMapper::toDTO);
+    public Response getConcerts(@QueryParam("limit") Integer limit, @DefaultValue("0") @QueryParam("after") long after,
+                                @Context Request request, @Context UriInfo uriInfo) {
+        CatalogueCache.Catalogue catalogue = CatalogueCache.instance().get();
+        if (limit == null && after == 0) {
+            return getCatalogueResponse(catalogue, new GenericEntity<List<ConcertDTO>>(catalogue.getConcerts()) {
+            }, request);
+        }
+
+        List<ConcertDTO> dtoConcerts = catalogue.getConcerts(after, getFetchSize(limit));
+        URI next = trimToPage(dtoConcerts, limit, ConcertDTO::getId, uriInfo);
+        return getCatalogueResponse(catalogue, new GenericEntity<List<ConcertDTO>>(dtoConcerts) {
+        }, request, next);
     }
 
     /**
@@ -82,23 +137,10 @@ public class ConcertResource {
      */
     @GET
     @Path("/concerts/summaries")
-    public Response getConcertSummaries() {
-        return getConcertsAs(ConcertMapper::toSummaryDTO);
-    }
-
-    private <TDTO> Response getConcertsAs(Function<Concert, TDTO> mappingFunction) {
-        EntityManager em = PersistenceManager.instance().createEntityManager();
-        try {
-
-            em.getTransaction().begin();
-            List<Concert> domainConcerts = em.createQuery("select c from Concert c", Concert.class).getResultList();
-            em.getTransaction().commit();
-
-            return Response.ok(getListGenericEntity(domainConcerts, mappingFunction)).build();
-
-        } finally {
-            em.close();
-        }
+    public Response getConcertSummaries(@Context Request request) {
+        CatalogueCache.Catalogue catalogue = CatalogueCache.instance().get();
+        return getCatalogueResponse(catalogue, new GenericEntity<List<ConcertSummaryDTO>>(catalogue.getConcertSummaries()) {
+        }, request);
     }
 
     // ----------------------------------------------------------------------------------------------------------
@@ -108,39 +150,34 @@ public class ConcertResource {
     // ----------------------------------------------------------------------------------------------------------
     @GET
     @Path("/performers/{id}")
-    public PerformerDTO getPerformer(@PathParam("id") long id) {
-        EntityManager em = PersistenceManager.instance().createEntityManager();
-        try {
-            em.getTransaction().begin();
-            Performer domainPerformer = em.find(Performer.class, id);
-            em.getTransaction().commit();
+    public Response getPerformer(@PathParam("id") long id, @Context Request request) {
+        CatalogueCache.Catalogue catalogue = CatalogueCache.instance().get();
 
-            if (domainPerformer == null) {
-                throw new NotFoundException(Response.status(Status.NOT_FOUND).build());
-            }
-
-            return PerformerMapper.toDTO(domainPerformer);
-
-        } finally {
-            em.close();
+        PerformerDTO dtoPerformer = catalogue.getPerformer(id);
+        if (dtoPerformer == null) {
+            throw new NotFoundException(Response.status(Status.NOT_FOUND).build());
         }
+
+        return getCatalogueResponse(catalogue, dtoPerformer, request);
     }
 
+    /**
+     * Gets all performers, or a page of them. Paging works as for {@link #getConcerts(Integer, long, Request, UriInfo)}.
+     */
     @GET
     @Path("/performers")
-    public Response getPerformers() {
-        EntityManager em = PersistenceManager.instance().createEntityManager();
-        try {
-
-            em.getTransaction().begin();
-            List<Performer> domainPerformers = em.createQuery("select p from Performer p", Performer.class).getResultList();
-            em.getTransaction().commit();
-
-            return Response.ok(getListGenericEntity(domainPerformers, PerformerMapper::toDTO)).build();
-
-        } finally {
-            em.close();
+    public Response getPerformers(@QueryParam("limit") Integer limit, @DefaultValue("0") @QueryParam("after") long after,
+                                  @Context Request request, @Context UriInfo uriInfo) {
+        CatalogueCache.Catalogue catalogue = CatalogueCache.instance().get();
+        if (limit == null && after == 0) {
+            return getCatalogueResponse(catalogue, new GenericEntity<List<PerformerDTO>>(catalogue.getPerformers()) {
+            }, request);
         }
+
+        List<PerformerDTO> dtoPerformers = catalogue.getPerformers(after, getFetchSize(limit));
+        URI next = trimToPage(dtoPerformers, limit, PerformerDTO::getId, uriInfo);
+        return getCatalogueResponse(catalogue, new GenericEntity<List<PerformerDTO>>(dtoPerformers) {
+        }, request, next);
     }
     // ----------------------------------------------------------------------------------------------------------
 
@@ -168,7 +205,7 @@ public class ConcertResource {
             em.getTransaction().begin();
 
             // Try to get user from DB.
-            User domainUser = em.createQuery("select u from User u where u.username = :username and u.password = :password", User.class)
+            User domainUser = em.createNamedQuery("User.findByCredentials", User.class)
                     .setParameter("username", dtoUser.getUsername())
                     .setParameter("password", dtoUser.getPassword())
                     .getSingleResult();
@@ -179,6 +216,9 @@ public class ConcertResource {
             em.merge(domainUser);
             em.getTransaction().commit();
 
+            // The new token replaces any previous one for this user, in the cache as well as the DB.
+            AuthTokenCache.instance().putIssued(authCookie.getValue(), domainUser.getId());
+
             return Response.ok().cookie(authCookie).build();
         } catch (NoResultException | NonUniqueResultException e) {
             throw new NotAuthorizedException(Response.status(Status.UNAUTHORIZED).build());
@@ -188,7 +228,8 @@ public class ConcertResource {
     }
 
     /**
-     * Gets all seats with the given booking status on the given date.
+     * Gets all seats with the given booking status on the given date. The seats are streamed straight from the
+     * database as they're written (see {@link StreamingJsonList}).
      *
      * @param dateParam the date
      * @return a 200 response with all booked seats.
@@ -200,32 +241,36 @@ public class ConcertResource {
 
         LocalDateTime date = dateParam.getLocalDateTime();
 
-        EntityManager em = PersistenceManager.instance().createEntityManager();
-        try {
-            em.getTransaction().begin();
-
-            List<Seat> domainSeats;
-
+        return Response.ok(new StreamingJsonList<>(em -> {
             if (status == BookingStatus.Any) {
-                domainSeats = em
-                        .createQuery("select s from Seat s where s.date = :date", Seat.class)
-                        .setParameter("date", date)
-                        .getResultList();
-            } else {
-                domainSeats = em
-                        .createQuery("select s from Seat s where s.date = :date and s.isBooked = :isBooked", Seat.class)
-                        .setParameter("date", date)
-                        .setParameter("isBooked", status == BookingStatus.Booked)
-                        .getResultList();
+                return em.createNamedQuery("Seat.findByDate", Seat.class)
+                        .setParameter("date", date);
             }
+            return em.createNamedQuery("Seat.findByDateAndStatus", Seat.class)
+                    .setParameter("date", date)
+                    .setParameter("isBooked", status == BookingStatus.Booked);
+        }, SeatMapper::toDTO)).build();
+    }
 
-            em.getTransaction().commit();
-
-            return Response.ok(getListGenericEntity(domainSeats, SeatMapper::toDTO)).build();
+    /**
+     * Gets a compact map of every seat in the theatre on the given date: a bitset of the taken seats, plus the price
+     * bands needed to work out each seat's price. This carries the same information as {@link #getSeats} for a
+     * fraction of the size, and is read from the {@link SeatInventory} rather than the database.
+     *
+     * @param dateParam the date
+     * @return a 200 response with the seat map, or 404 if no concert is scheduled on that date
+     */
+    @GET
+    @Path("/seats/{date}/map")
+    public Response getSeatMap(@PathParam("date") LocalDateTimeParam dateParam) {
+        LocalDateTime date = dateParam.getLocalDateTime();
 
-        } finally {
-            em.close();
+        int[] rows = SeatInventory.instance().getTakenRows(date);
+        if (rows == null) {
+            return Response.status(Status.NOT_FOUND).build();
         }
+
+        return Response.ok(new SeatMapDTO(date, rows, TheatreLayout.NUM_SEATS_PER_ROW, PRICE_BANDS)).build();
     }
 
     /**
@@ -250,60 +295,274 @@ public class ConcertResource {
     @POST
     @Path("/bookings")
     public Response makeBooking(BookingRequestDTO bookingRequest, @CookieParam("auth") Cookie authCookie) {
+        return createBooking(bookingRequest, authCookie, Booking.Status.Confirmed);
+    }
+
+    /**
+     * Places a soft hold on the specified seats at the specified concert on the specified date. Works exactly like
+     * {@link #makeBooking(BookingRequestDTO, Cookie)}, except that the resulting booking must be confirmed with
+     * {@link #confirmHold(long, Cookie)} within {@link Config#HOLD_TTL_SECONDS} seconds. If it isn't, the hold is
+     * cancelled and its seats are released.
+     *
+     * @param bookingRequest the request containing the concert id, date, and list of seats to hold
+     * @param authCookie     the authentication token for a successfully authenticated user
+     * @return 201 with a link to the held booking, 403 if any requested seats are unavailable, 400 for bad concert / date, 401 for auth error
+     */
+    @POST
+    @Path("/bookings/holds")
+    public Response holdSeats(BookingRequestDTO bookingRequest, @CookieParam("auth") Cookie authCookie) {
+        return createBooking(bookingRequest, authCookie, Booking.Status.Soft);
+    }
+
+    /**
+     * Confirms a soft hold made with {@link #holdSeats(BookingRequestDTO, Cookie)}, turning it into a normal booking.
+     * Confirming a booking that's already confirmed has no effect.
+     *
+     * @param id         the id of the held booking
+     * @param authCookie the authentication token for the user who made the hold
+     * @return 204 if the booking is now confirmed, 409 if the hold has expired, 404 if there's no such booking, 403 if
+     * it's someone else's booking, 401 for auth error
+     */
+    @POST
+    @Path("/bookings/{id}/confirm")
+    public Response confirmHold(@PathParam("id") long id, @CookieParam("auth") Cookie authCookie) {
 
         EntityManager em = PersistenceManager.instance().createEntityManager();
         try {
-            em.getTransaction().begin();
+            User user = lookupUserByAuthenticationToken(authCookie, em);
 
-            // The user that's making the booking
-            User domainUser = lookupUserByAuthenticationToken(authCookie, em);
+            Booking booking = em.find(Booking.class, id);
+            if (booking == null) {
+                throw new NotFoundException(Response.status(Status.NOT_FOUND).build());
+            }
+            if (!booking.getReservedFor().getId().equals(user.getId())) {
+                throw new ForbiddenException(Response.status(Status.FORBIDDEN).build());
+            }
+            if (booking.getStatus() == Booking.Status.Confirmed) {
+                return Response.noContent().build();
+            }
 
-            // The concert being booked
-            Concert domainConcert = em.find(Concert.class, bookingRequest.getConcertId());
-            if (domainConcert == null || !domainConcert.isScheduledOn(bookingRequest.getDate())) {
-                throw new BadRequestException(Response.status(Status.BAD_REQUEST).build());
+            // Take the hold out of the expiry wheel before touching it, so the sweeper can't release it underneath us.
+            // A hold only goes into the wheel once its booking has committed, so one that's only just been made may not
+            // be there yet. In that case (or if it really has expired) the booking's status in the database decides:
+            // expired holds have been cancelled, and the booking's version stops us confirming one that the sweeper is
+            // cancelling at the same time.
+            SeatHolds holds = SeatHolds.instance();
+            SeatHolds.Hold hold = holds.take(id);
+
+            boolean committed = false;
+            try {
+                em.getTransaction().begin();
+                em.refresh(booking);
+                if (booking.getStatus() != Booking.Status.Soft) {
+                    em.getTransaction().rollback();
+                    return booking.getStatus() == Booking.Status.Confirmed
+                            ? Response.noContent().build()
+                            : Response.status(Status.CONFLICT).build();
+                }
+                booking.confirm();
+                em.getTransaction().commit();
+                committed = true;
+
+                return Response.noContent().build();
+
+            } catch (RollbackException e) {
+                // Someone else changed the booking first: either the sweeper cancelled it, or another request confirmed it.
+                em.clear();
+                booking = em.find(Booking.class, id);
+                return booking.getStatus() == Booking.Status.Confirmed
+                        ? Response.noContent().build()
+                        : Response.status(Status.CONFLICT).build();
+
+            } finally {
+                if (!committed && hold != null) {
+                    holds.restore(hold);
+                }
             }
 
-            // Get all seat labels
-            List<String> seatLabels = bookingRequest.getSeatLabels();
+        } finally {
+            em.close();
+        }
+    }
 
-            // Get all unbooked seats with matching labels and dates
-            List<Seat> domainSeats = em
-                    .createQuery("select s from Seat s where s.date = :date and s.isBooked = false and s.label in (:labels)", Seat.class)
-                    .setParameter("date", bookingRequest.getDate())
-                    .setParameter("labels", seatLabels)
-                    .getResultList();
+    /**
+     * Books the best available block of adjacent seats at the specified concert on the specified date, rather than
+     * particular seats. Details are contained within the {@link BestAvailableRequestDTO} object.
+     * <p>
+     * The seats are chosen and claimed in a single step, so two clients can never be offered the same seats. The best
+     * block is in the row nearest the front (of the requested price band, if there is one) that has enough free seats
+     * together, and as close to the middle of that row as possible. The seats that were booked can be read from the
+     * new booking.
+     *
+     * @param bookingRequest the request containing the concert id, date, number of seats, and optional price band
+     * @param authCookie     the authentication token for a successfully authenticated user
+     * @return 201 with a link to the completed booking, 403 if no row has enough free seats together, 400 for bad
+     * concert / date / number of seats / price band, 401 for auth error
+     */
+    @POST
+    @Path("/bookings/best-available")
+    public Response bookBestAvailable(BestAvailableRequestDTO bookingRequest, @CookieParam("auth") Cookie authCookie) {
+        long userId = lookupUserIdByAuthenticationToken(authCookie);
+
+        long concertId = bookingRequest.getConcertId();
+        LocalDateTime date = bookingRequest.getDate();
+        int numSeats = bookingRequest.getNumSeats();
+
+        int[] rows = bookingRequest.getPriceBand() == null
+                ? new int[]{0, TheatreLayout.NUM_ROWS - 1}
+                : TheatreLayout.rowsOf(bookingRequest.getPriceBand());
+
+        SeatInventory inventory = SeatInventory.instance();
+        if (rows == null || numSeats < 1 || numSeats > TheatreLayout.NUM_SEATS_PER_ROW
+                || !inventory.isScheduled(concertId, date)) {
+            throw new BadRequestException(Response.status(Status.BAD_REQUEST).build());
+        }
 
-            // The number of requested seats and the number of unbooked seats should be the same. If not, get outta here.
-            if (seatLabels.size() != domainSeats.size()) {
-                em.getTransaction().rollback();
+        List<String> seatLabels = inventory.claimBestAvailable(concertId, date, numSeats, rows[0], rows[1]);
+        if (seatLabels == null) {
+            return Response.status(Status.FORBIDDEN).build();
+        }
+
+        if ("lanes".equals(Config.BOOKING_STRATEGY)) {
+            return writeBookingInLane(userId, concertId, date, seatLabels, Booking.Status.Confirmed, true);
+        }
+        return writeClaimedBooking(userId, concertId, date, seatLabels, Booking.Status.Confirmed);
+    }
+
+    private Response createBooking(BookingRequestDTO bookingRequest, Cookie authCookie, Booking.Status status) {
+        long userId = lookupUserIdByAuthenticationToken(authCookie);
+
+        long concertId = bookingRequest.getConcertId();
+        LocalDateTime date = bookingRequest.getDate();
+        List<String> seatLabels = bookingRequest.getSeatLabels();
+
+        if ("lanes".equals(Config.BOOKING_STRATEGY)) {
+            return writeBookingInLane(userId, concertId, date, seatLabels, status, false);
+        }
+
+        // Claim the seats in memory first. Requests for a concert / date that doesn't exist, or for seats that are
+        // already taken, are turned away here without ever opening a transaction.
+        switch (SeatInventory.instance().claim(concertId, date, seatLabels)) {
+            case UNKNOWN_SHOW:
+                throw new BadRequestException(Response.status(Status.BAD_REQUEST).build());
+            case CONFLICT:
                 return Response.status(Status.FORBIDDEN).build();
-            }
+        }
+        return writeClaimedBooking(userId, concertId, date, seatLabels, status);
+    }
+
+    /**
+     * Hands the booking to the show's {@link BookingLanes} lane, and waits for it to be decided. Bookings for the same
+     * show are decided one at a time, so they never compete for the same row versions in the database.
+     *
+     * @param claimed whether the seats have already been claimed in the {@link SeatInventory}
+     */
+    private Response writeBookingInLane(long userId, long concertId, LocalDateTime date, List<String> seatLabels,
+                                        Booking.Status status, boolean claimed) {
+        CompletableFuture<BookingLanes.Outcome> future = claimed
+                ? BookingLanes.instance().bookClaimed(userId, concertId, date, seatLabels, status)
+                : BookingLanes.instance().book(userId, concertId, date, seatLabels, status);
 
-            // Update the booked status of all the seats
-            domainSeats.forEach(seat -> {
-                seat.book();
-                em.merge(seat);
+        BookingLanes.Outcome outcome;
+        try {
+            outcome = future.get();
+        } catch (InterruptedException e) {
+            // The lane may still commit the booking after we've stopped waiting for it, in which case everything else
+            // still needs to hear about it (and a hold still needs to expire).
+            future.thenAccept(lateOutcome -> {
+                if (lateOutcome.getResult() == BookingLanes.Result.BOOKED) {
+                    recordBookingCommitted(lateOutcome.getBookingId(), concertId, date, seatLabels, status);
+                }
             });
+            Thread.currentThread().interrupt();
+            return Response.status(Status.SERVICE_UNAVAILABLE).build();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Booking failed", e.getCause());
+        }
 
-            // Make the booking object
-            Booking domainBooking = new Booking(bookingRequest.getDate(), domainSeats, domainConcert, domainUser);
-            em.persist(domainBooking);
+        switch (outcome.getResult()) {
+            case UNKNOWN_SHOW:
+                throw new BadRequestException(Response.status(Status.BAD_REQUEST).build());
+            case CONFLICT:
+                return Response.status(Status.FORBIDDEN).build();
+            case BUSY:
+                return Response.status(Status.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, Config.BOOKING_RETRY_AFTER_SECONDS)
+                        .build();
+            default:
+                return bookingCommitted(outcome.getBookingId(), concertId, date, seatLabels, status);
+        }
+    }
 
-            em.getTransaction().commit();
+    /**
+     * Writes a booking for seats that have already been claimed in the {@link SeatInventory}, in its own transaction on
+     * the request thread. The seats are released again if the booking isn't committed.
+     */
+    private Response writeClaimedBooking(long userId, long concertId, LocalDateTime date, List<String> seatLabels,
+                                         Booking.Status status) {
+        boolean committed = false;
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            em.getTransaction().begin();
+
+            Booking domainBooking = BookingWriter.write(em, concertId, date, seatLabels,
+                    em.getReference(User.class, userId), status);
 
-            // As remaining seats for this concert and date have now changed, process any subscriptions interested in the info.
-            SUBSCRIPTIONS_THREAD_POOL.submit(() -> processConcertInfoSubscriptions(bookingRequest.getConcertId(), bookingRequest.getDate()));
+            // The database is the final word - if it disagrees with the inventory, get outta here.
+            if (domainBooking == null) {
+                em.getTransaction().rollback();
+                return Response.status(Status.FORBIDDEN).build();
+            }
 
-            // If the transaction was successful, return the link to the user.
-            return Response.created(URI.create("/concert-service/bookings/" + domainBooking.getId())).build();
+            em.getTransaction().commit();
+            committed = true;
 
+            return bookingCommitted(domainBooking.getId(), concertId, date, seatLabels, status);
 
         } catch (RollbackException e) {
             return Response.status(Status.FORBIDDEN).build();
 
         } finally {
             em.close();
+
+            // Give the seats back if they didn't make it into the database.
+            if (!committed) {
+                SeatInventory.instance().release(concertId, date, seatLabels);
+                SeatEvents.instance().publishReleased(concertId, date, seatLabels);
+            }
+        }
+    }
+
+    /**
+     * Brings everything else up to date with a booking that has just been committed, and returns the 201 Created
+     * response pointing to it.
+     */
+    private Response bookingCommitted(long bookingId, long concertId, LocalDateTime date, List<String> seatLabels,
+                                      Booking.Status status) {
+        recordBookingCommitted(bookingId, concertId, date, seatLabels, status);
+
+        // If the transaction was successful, return the link to the user.
+        return Response.created(URI.create("/concert-service/bookings/" + bookingId)).build();
+    }
+
+    /**
+     * Brings everything else (seat counts, seat events, holds and subscriptions) up to date with a booking that has just
+     * been committed.
+     */
+    private void recordBookingCommitted(long bookingId, long concertId, LocalDateTime date, List<String> seatLabels,
+                                        Booking.Status status) {
+        SeatInventory.instance().recordBooked(concertId, date, seatLabels.size());
+        SeatEvents.instance().publishBooked(concertId, date, seatLabels);
+
+        // Holds need to be confirmed before they expire.
+        if (status == Booking.Status.Soft) {
+            SeatHolds.instance().add(bookingId, concertId, date, seatLabels);
+        }
+
+        // As remaining seats for this date have now changed, process any subscriptions interested in the info. Every
+        // concert on the date shares its seats, so that's subscriptions to any of them.
+        for (long showConcertId : SeatInventory.instance().getConcertIds(date)) {
+            BackgroundExecutor.instance().execute(() -> processConcertInfoSubscriptions(showConcertId, date));
         }
     }
 
@@ -325,39 +584,57 @@ public class ConcertResource {
             em.getTransaction().commit();
 
             // If booking's user doesn't match our user, 403.
-            if (booking.getReservedFor() != user) {
+            if (!booking.getReservedFor().getId().equals(user.getId())) {
                 throw new ForbiddenException(Response.status(Status.FORBIDDEN).build());
             }
 
-            return BookingMapper.toDTO(booking);
+            return RequestMetrics.instance().timeMapping(() -> BookingMapper.toDTO(booking));
 
         } finally {
             em.close();
         }
     }
 
+    /**
+     * Gets the authenticated user's confirmed bookings, or a page of them. Paging works as for
+     * {@link #getConcerts(Integer, long, Request, UriInfo)}. Unpaged lists are streamed straight from the database as
+     * they're written (see {@link StreamingJsonList}), since they can be any length.
+     */
     @GET
     @Path("/bookings")
-    public Response getBookingsForUser(@CookieParam("auth") Cookie authCookie) {
+    public Response getBookingsForUser(@CookieParam("auth") Cookie authCookie, @QueryParam("limit") Integer limit,
+                                       @DefaultValue("0") @QueryParam("after") long after, @Context UriInfo uriInfo) {
+        int fetchSize = getFetchSize(limit);
+
+        // Get authenticated user - if none, then error.
+        long userId = lookupUserIdByAuthenticationToken(authCookie);
+        LOGGER.info("getBookingsForUser(): User id = " + userId);
+
+        // Get confirmed bookings for the given user - holds and cancelled bookings aren't included.
+        Function<EntityManager, TypedQuery<Booking>> queryFunc = em -> em
+                .createNamedQuery("Booking.findByUserAndStatusAfter", Booking.class)
+                .setParameter("user", em.getReference(User.class, userId))
+                .setParameter("status", Booking.Status.Confirmed)
+                .setParameter("after", after);
+
+        if (limit == null) {
+            return Response.ok(new StreamingJsonList<>(queryFunc, BookingMapper::toDTO)).build();
+        }
 
         EntityManager em = PersistenceManager.instance().createEntityManager();
         try {
-
             em.getTransaction().begin();
 
-            // Get authenticated user - if none, then error.
-            User user = lookupUserByAuthenticationToken(authCookie, em);
-            LOGGER.info("getBookingsForUser(): Username = " + user.getUsername());
-
-            // Get bookings for the given user
-            List<Booking> domainBookings = em
-                    .createQuery("select b from Booking b where b.user = :user", Booking.class)
-                    .setParameter("user", user)
+            List<Booking> domainBookings = queryFunc.apply(em)
+                    .setMaxResults(fetchSize)
                     .getResultList();
 
+            URI next = trimToPage(domainBookings, limit, Booking::getId, uriInfo);
+            GenericEntity<List<BookingDTO>> dtoBookings = getListGenericEntity(domainBookings, BookingMapper::toDTO);
+
             em.getTransaction().commit();
 
-            return Response.ok(getListGenericEntity(domainBookings, BookingMapper::toDTO)).build();
+            return Response.ok(dtoBookings).links(getNextLinks(next)).build();
 
         } finally {
             em.close();
@@ -383,58 +660,41 @@ public class ConcertResource {
             Concert concert = em.find(Concert.class, subInfo.getConcertId());
             if (concert == null || !concert.isScheduledOn(subInfo.getDate())) {
                 sub.resume(Response.status(Status.BAD_REQUEST).build());
+                return;
             }
 
         } catch (Exception e) {
             // If there's any error (usually because not authenticated), pass it on to the suspended response.
             sub.resume(e);
+            return;
         } finally {
             em.getTransaction().commit();
             em.close();
         }
 
-        // Save sub info.
-        synchronized (SUBSCRIPTIONS) {
-            SUBSCRIPTIONS.put(subInfo, sub);
+        // Save sub info, unless this user or the service as a whole already has as many subscriptions as it can take.
+        SubscriptionRegistry.AddResult result = SubscriptionRegistry.instance().add(user.getId(), subInfo, sub);
+        if (result != SubscriptionRegistry.AddResult.ADDED) {
+            LOGGER.info("subscribeConcertInfo(): Subscription for user " + user.getId() + " rejected: " + result);
+            sub.resume(Response.status(Status.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, Config.SUBSCRIPTION_RETRY_AFTER_SECONDS)
+                    .build());
         }
     }
 
     private void processConcertInfoSubscriptions(long concertId, LocalDateTime date) {
 
-        // Find all matching subscriptions
-        List<ConcertInfoSubscriptionDTO> matchingSubs;
-        synchronized (SUBSCRIPTIONS) {
-
-            // Optimization - if there are no subs, just get outta here before we do any work.
-            if (SUBSCRIPTIONS.size() <= 0) {
-                return;
-            }
-
-            matchingSubs = SUBSCRIPTIONS.keySet().stream()
-                    .filter(sub -> sub.getConcertId() == concertId && sub.getDate().equals(date))
-                    .collect(Collectors.toList());
-        }
-
-        // Only bother continuing if there are any requests for this concert / date.
-        if (matchingSubs.size() <= 0) {
+        // Optimization - if there are no subs for this concert / date, just get outta here before we do any work.
+        SubscriptionRegistry subscriptions = SubscriptionRegistry.instance();
+        if (!subscriptions.hasSubscribers(concertId, date)) {
             return;
         }
 
-        LOGGER.info("processConcertInfoSubscriptions(): Found matching subs for " + FORMATTER.format(date) + " (" + matchingSubs.size() + ")");
-
         // Get all remaining seats for this concert / date
-        EntityManager em = PersistenceManager.instance().createEntityManager();
-        long remainingSeats;
-        try {
-            remainingSeats = em
-                    .createQuery("select count(s) from Seat s where s.isBooked = false and s.date = :date", Long.class)
-                    .setParameter("date", date)
-                    .getSingleResult();
-        } catch (NonUniqueResultException | NoResultException e) {
-            LOGGER.error("processConcertInfoSubscriptions(): Didn't receive a count value!", e);
+        int remainingSeats = SeatInventory.instance().getNumSeatsRemaining(concertId, date);
+        if (remainingSeats < 0) {
+            LOGGER.error("processConcertInfoSubscriptions(): No seat counts for " + concertId + " on " + FORMATTER.format(date));
             return;
-        } finally {
-            em.close();
         }
 
         LOGGER.info("processConcertInfoSubscriptions(): " + remainingSeats + " remaining seats for " + FORMATTER.format(date));
@@ -442,23 +702,18 @@ public class ConcertResource {
         double proportionUnbooked = (double) remainingSeats / (double) TheatreLayout.NUM_SEATS_IN_THEATRE;
         long percentageUnbooked = Math.round(proportionUnbooked * 100);
         long percentageBooked = 100 - percentageUnbooked;
-        ConcertInfoNotificationDTO notification = new ConcertInfoNotificationDTO((int) remainingSeats);
+        ConcertInfoNotificationDTO notification = new ConcertInfoNotificationDTO(remainingSeats);
 
         LOGGER.info("processConcertInfoSubscriptions(): Theatre is " + percentageBooked + "% full on " + FORMATTER.format(date));
 
-        // Resume all subs that meet the criteria
-        // (Doing my best to keep the synchronized block to a minimum by removing all non-matching subs first)
-        matchingSubs = matchingSubs.stream()
-                .filter(s -> percentageBooked >= s.getPercentageBooked()).collect(Collectors.toList());
+        // Resume all subs that meet the criteria. The registry only hands back the ones whose threshold has been crossed.
+        List<AsyncResponse> matchingSubs = subscriptions.takeCrossed(concertId, date, (int) percentageBooked);
 
         LOGGER.info("processConcertInfoSubscriptions(): Found matching subs for " +
                 FORMATTER.format(date) + ", " + percentageBooked + "% full (" + matchingSubs.size() + ")");
 
-        synchronized (SUBSCRIPTIONS) {
-            for (ConcertInfoSubscriptionDTO sub : matchingSubs) {
-                SUBSCRIPTIONS.get(sub).resume(notification);
-                SUBSCRIPTIONS.remove(sub);
-            }
+        for (AsyncResponse sub : matchingSubs) {
+            sub.resume(notification);
         }
 
         LOGGER.info("processConcertInfoSubscriptions(): All matches notified.");
@@ -483,17 +738,41 @@ public class ConcertResource {
         return newCookie;
     }
 
+    /**
+     * Looks up the id of the user with the given authentication token, using an EntityManager of its own.
+     */
+    private static long lookupUserIdByAuthenticationToken(Cookie authToken) {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            return lookupUserByAuthenticationToken(authToken, em).getId();
+        } finally {
+            em.close();
+        }
+    }
+
     /**
      * Gets a User from the DB, given an auth token. If none exists, throw a 401 error.
+     * <p>
+     * Tokens that have been seen recently are resolved from the {@link AuthTokenCache}, in which case the returned User
+     * is an uninitialized reference and no query is made until something other than its id is needed.
      */
     private static User lookupUserByAuthenticationToken(Cookie authToken, EntityManager em) {
 
         try {
             String uuid = authToken.getValue();
+
+            Long userId = AuthTokenCache.instance().get(uuid);
+            if (userId != null) {
+                return em.getReference(User.class, userId);
+            }
+
             TypedQuery<User> query = em
-                    .createQuery("select u from User u where u.uuid = :uuid", User.class)
+                    .createNamedQuery("User.findByUuid", User.class)
                     .setParameter("uuid", uuid);
-            return query.getSingleResult();
+            User user = query.getSingleResult();
+
+            AuthTokenCache.instance().putLookedUp(uuid, user.getId());
+            return user;
 
         } catch (NullPointerException | NonUniqueResultException | NoResultException e) {
             LOGGER.error("Error looking up User by authentication token", e);
@@ -501,6 +780,67 @@ public class ConcertResource {
         }
     }
 
+    /**
+     * Builds a response for catalogue data, tagged with the catalogue's ETag. If the client's If-None-Match header
+     * shows that it already has the current version, a 304 Not Modified is returned instead of the entity.
+     */
+    private static Response getCatalogueResponse(CatalogueCache.Catalogue catalogue, Object entity, Request request) {
+        return getCatalogueResponse(catalogue, entity, request, null);
+    }
+
+    /**
+     * Like {@link #getCatalogueResponse(CatalogueCache.Catalogue, Object, Request)}, for a page of a list. If next
+     * isn't null, the response links to it as the next page.
+     */
+    private static Response getCatalogueResponse(CatalogueCache.Catalogue catalogue, Object entity, Request request,
+                                                 URI next) {
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setNoCache(true);
+
+        Response.ResponseBuilder notModified = request.evaluatePreconditions(catalogue.getEntityTag());
+        if (notModified != null) {
+            return notModified.cacheControl(cacheControl).build();
+        }
+
+        return Response.ok(entity).tag(catalogue.getEntityTag()).cacheControl(cacheControl).links(getNextLinks(next))
+                .build();
+    }
+
+    /**
+     * Gets the number of items to fetch for a list request with the given limit: one more than the page size, so that
+     * whether there's another page can be told from the results alone. Unpaged requests (with no limit) fetch
+     * everything. Throws a 400 if the limit isn't positive.
+     */
+    private static int getFetchSize(Integer limit) {
+        if (limit == null) {
+            return Integer.MAX_VALUE;
+        }
+        if (limit < 1) {
+            throw new BadRequestException(Response.status(Status.BAD_REQUEST).build());
+        }
+        return Math.min(limit, Config.PAGE_MAX_LIMIT) + 1;
+    }
+
+    /**
+     * Trims a list fetched with {@link #getFetchSize(Integer)} down to the page size. Returns the URI of the next page
+     * (the current request, continuing after the last item of this page), or null if this is the last page.
+     */
+    private static <T> URI trimToPage(List<T> items, Integer limit, Function<T, Long> idOf, UriInfo uriInfo) {
+        if (limit == null || items.size() < getFetchSize(limit)) {
+            return null;
+        }
+
+        items.remove(items.size() - 1);
+        return uriInfo.getRequestUriBuilder()
+                .replaceQueryParam("limit", items.size())
+                .replaceQueryParam("after", idOf.apply(items.get(items.size() - 1)))
+                .build();
+    }
+
+    private static Link[] getNextLinks(URI next) {
+        return next == null ? new Link[0] : new Link[]{Link.fromUri(next).rel("next").build()};
+    }
+
     /**
      * A utility function which maps the given list of domain objects into a GenericEntity of DTO objects, following the
      * given mapping function.
@@ -512,8 +852,8 @@ public class ConcertResource {
      * @return
      */
     private static <TDTO, TDomain> GenericEntity<List<TDTO>> getListGenericEntity(List<TDomain> domainList, Function<TDomain, TDTO> mappingFunc) {
-        List<TDTO> dtoConcerts = domainList.stream().map(mappingFunc)
-                .collect(Collectors.toList());
+        List<TDTO> dtoConcerts = RequestMetrics.instance().timeMapping(() -> domainList.stream().map(mappingFunc)
+                .collect(Collectors.toList()));
 
         return new GenericEntity<List<TDTO>>(dtoConcerts) {
         };
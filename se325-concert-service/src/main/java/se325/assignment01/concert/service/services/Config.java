@@ -0,0 +1,158 @@
+package se325.assignment01.concert.service.services;
+
+/**
+ * Tunable settings for the concert service. Each can be overridden with a system property of the same name when the
+ * service is started (e.g. -Dconcert.auth.tokenTtlSeconds=600).
+ */
+public class Config {
+
+    /**
+     * The JDBC URL of the database, or null to use the one in persistence.xml. Lets the service (or a benchmark) be
+     * pointed at a different database, e.g. an in-memory H2 one, without a rebuild.
+     */
+    public static final String DB_URL = System.getProperty("concert.db.url");
+
+    /**
+     * The maximum number of pooled database connections. Requests beyond this wait for a connection to be returned.
+     */
+    public static final int DB_POOL_SIZE = Integer.getInteger("concert.db.poolSize", 10);
+
+    /**
+     * The number of idle connections the pool tries to keep open. Defaults to the pool size, i.e. a fixed-size pool.
+     */
+    public static final int DB_POOL_MIN_IDLE = Integer.getInteger("concert.db.poolMinIdle", DB_POOL_SIZE);
+
+    /**
+     * How long a connection may sit idle in the pool before it's closed, if there are more than
+     * {@link #DB_POOL_MIN_IDLE} connections.
+     */
+    public static final long DB_POOL_IDLE_TIMEOUT_MILLIS = Long.getLong("concert.db.poolIdleTimeoutMillis", 10 * 60 * 1000);
+
+    /**
+     * How long a request waits for a pooled connection before failing.
+     */
+    public static final long DB_POOL_CONNECTION_TIMEOUT_MILLIS = Long.getLong("concert.db.poolConnectionTimeoutMillis", 30 * 1000);
+
+    /**
+     * The number of parsed statements each connection keeps for reuse (H2's QUERY_CACHE_SIZE).
+     */
+    public static final int DB_STATEMENT_CACHE_SIZE = Integer.getInteger("concert.db.statementCacheSize", 64);
+
+    /**
+     * How long a user's auth token is remembered by the service without going back to the database.
+     */
+    public static final long AUTH_TOKEN_TTL_SECONDS = Long.getLong("concert.auth.tokenTtlSeconds", 30 * 60);
+
+    /**
+     * The maximum number of auth tokens remembered at once. The oldest are forgotten first.
+     */
+    public static final int AUTH_TOKEN_CACHE_SIZE = Integer.getInteger("concert.auth.tokenCacheSize", 10_000);
+
+    /**
+     * How long a soft hold on seats lasts before it's released, if it isn't confirmed.
+     */
+    public static final long HOLD_TTL_SECONDS = Long.getLong("concert.holds.ttlSeconds", 120);
+
+    /**
+     * How often expired holds are swept up. Holds are released at most this long after they expire.
+     */
+    public static final long HOLD_SWEEP_INTERVAL_MILLIS = Long.getLong("concert.holds.sweepIntervalMillis", 250);
+
+    /**
+     * The largest page size clients may ask for when listing concerts, performers or bookings a page at a time. Larger
+     * limits are treated as this one.
+     */
+    public static final int PAGE_MAX_LIMIT = Integer.getInteger("concert.paging.maxLimit", 100);
+
+    /**
+     * How many rows at a time are fetched from the database when a list response is streamed (see
+     * {@link StreamingJsonList}). The EntityManager is also cleared after each this many rows, so no more than this many
+     * entities are held at once.
+     */
+    public static final int STREAMING_BATCH_SIZE = Integer.getInteger("concert.streaming.batchSize", 100);
+
+    /**
+     * How bookings are written to the database. Either "direct" (each request writes its own booking, in its own
+     * transaction) or "lanes" (each show's bookings are decided one at a time, in arrival order, by a single thread,
+     * which commits them in batches - see {@link BookingLanes}). Lanes are opt-in: on the machines measured so far they
+     * have been slower than writing directly.
+     */
+    public static final String BOOKING_STRATEGY = System.getProperty("concert.booking.strategy", "direct");
+
+    /**
+     * The number of booking lanes (and so threads) for the "lanes" booking strategy. Each show always uses the same
+     * lane, so bookings for different shows can be written in parallel up to this many at a time.
+     */
+    public static final int BOOKING_LANES = Integer.getInteger("concert.booking.lanes", Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The maximum number of bookings waiting in each lane. Further bookings for that lane are turned away (with a 503)
+     * until it catches up.
+     */
+    public static final int BOOKING_LANE_CAPACITY = Integer.getInteger("concert.booking.laneCapacity", 1024);
+
+    /**
+     * The maximum number of bookings a lane commits in a single transaction.
+     */
+    public static final int BOOKING_BATCH_SIZE = Integer.getInteger("concert.booking.batchSize", 32);
+
+    /**
+     * How long clients are asked to wait (via the Retry-After header) before retrying a booking that was turned away
+     * because its lane was full.
+     */
+    public static final int BOOKING_RETRY_AFTER_SECONDS = Integer.getInteger("concert.booking.retryAfterSeconds", 1);
+
+    /**
+     * How a booking's seats are marked as booked in the database, whichever booking strategy is in use. Either
+     * "entity" (the seats are loaded, checked and updated one entity at a time, each update checking the seat's
+     * version) or "conditional" (a single UPDATE books whichever of the seats are still free, and the booking succeeds
+     * only if that was all of them - see {@link BookingWriter}).
+     */
+    public static final String BOOKING_SEAT_UPDATE = System.getProperty("concert.booking.seatUpdate", "entity");
+
+    /**
+     * How long a concert info subscription waits to be notified. If it hasn't been by then, it's answered with 204 No
+     * Content, and the client can subscribe again.
+     */
+    public static final long SUBSCRIPTION_TTL_SECONDS = Long.getLong("concert.subscriptions.ttlSeconds", 5 * 60);
+
+    /**
+     * The maximum number of concert info subscriptions a single user may have waiting at once.
+     */
+    public static final int SUBSCRIPTION_MAX_PER_USER = Integer.getInteger("concert.subscriptions.maxPerUser", 20);
+
+    /**
+     * The maximum number of concert info subscriptions waiting at once, across all users.
+     */
+    public static final int SUBSCRIPTION_MAX_TOTAL = Integer.getInteger("concert.subscriptions.maxTotal", 10_000);
+
+    /**
+     * How long clients are asked to wait (with a Retry-After header) before subscribing again, when a subscription is
+     * turned away because one of the limits above has been reached.
+     */
+    public static final int SUBSCRIPTION_RETRY_AFTER_SECONDS = Integer.getInteger("concert.subscriptions.retryAfterSeconds", 5);
+
+    /**
+     * How background work (e.g. notifying subscribers after a booking) is run. One of "fixed" (a fixed-size pool of
+     * {@link #EXECUTOR_THREADS} threads), "work-stealing" (a fork / join pool with {@link #EXECUTOR_THREADS} threads) or
+     * "virtual" (a new virtual thread per task; needs Java 21, and falls back to "work-stealing" on older versions).
+     */
+    public static final String EXECUTOR_STRATEGY = System.getProperty("concert.executor.strategy", "fixed");
+
+    /**
+     * The number of threads used by the "fixed" and "work-stealing" executor strategies.
+     */
+    public static final int EXECUTOR_THREADS = Integer.getInteger("concert.executor.threads", 5);
+
+    /**
+     * The maximum number of background tasks waiting or running at once. Further tasks are rejected until some finish.
+     */
+    public static final int EXECUTOR_QUEUE_CAPACITY = Integer.getInteger("concert.executor.queueCapacity", 10_000);
+
+    /**
+     * How long background tasks are given to finish when the service is shut down, before they're interrupted.
+     */
+    public static final long EXECUTOR_SHUTDOWN_SECONDS = Long.getLong("concert.executor.shutdownSeconds", 5);
+
+    private Config() {}
+}
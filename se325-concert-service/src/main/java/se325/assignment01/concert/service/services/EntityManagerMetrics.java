@@ -0,0 +1,20 @@
+package se325.assignment01.concert.service.services;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Times how long each EntityManager (Hibernate session) stays open, and records it in {@link RequestMetrics}.
+ * <p>
+ * Hibernate creates a new instance for every session, as configured by hibernate.session.events.auto in
+ * persistence.xml. The time covers everything done through the EntityManager, including waiting for a database
+ * connection, running queries, and committing.
+ */
+public class EntityManagerMetrics extends BaseSessionEventListener {
+
+    private final long start = System.nanoTime();
+
+    @Override
+    public void end() {
+        RequestMetrics.instance().recordEntityManager(System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,19 @@
+package se325.assignment01.concert.service.services;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+/**
+ * Exposes {@link RequestMetrics} in the Prometheus text format, so that the service can be scraped by a monitoring
+ * system (or just read with curl).
+ */
+@Path("/metrics")
+public class MetricsResource {
+
+    @GET
+    @Produces("text/plain; version=0.0.4; charset=utf-8")
+    public String getMetrics() {
+        return RequestMetrics.instance().toText();
+    }
+}
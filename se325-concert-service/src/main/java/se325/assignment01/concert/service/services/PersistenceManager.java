@@ -1,8 +1,21 @@
 package se325.assignment01.concert.service.services;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Persistence;
+import javax.persistence.metamodel.EntityType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Singleton class that manages an EntityManagerFactory. When a
@@ -13,14 +26,20 @@ import javax.persistence.Persistence;
  * When a Web service application component (e.g. a resource object) requires a
  * persistence context, it should call the PersistentManager's
  * createEntityManager() method to acquire one.
+ * <p>
+ * The instance is created at most once, even if several threads ask for it at the same time. The service creates it at
+ * start-up and calls {@link #warmUp()}, so that the first requests don't pay for building the EntityManagerFactory.
  */
 public class PersistenceManager {
-    private static PersistenceManager _instance = null;
 
-    private EntityManagerFactory entityManagerFactory;
+    private static Logger LOGGER = LoggerFactory.getLogger(PersistenceManager.class);
+
+    private static volatile PersistenceManager _instance = null;
+
+    private volatile EntityManagerFactory entityManagerFactory;
 
     protected PersistenceManager() {
-        entityManagerFactory = Persistence.createEntityManagerFactory("se325.assignment01.concert");
+        entityManagerFactory = createEntityManagerFactory();
     }
 
     public EntityManager createEntityManager() {
@@ -29,15 +48,67 @@ public class PersistenceManager {
 
     public static PersistenceManager instance() {
         if (_instance == null) {
-            _instance = new PersistenceManager();
+            synchronized (PersistenceManager.class) {
+                if (_instance == null) {
+                    _instance = new PersistenceManager();
+                }
+            }
         }
         return _instance;
     }
 
+    /**
+     * Gets Hibernate's statistics for the current EntityManagerFactory, e.g. for second-level cache hit rates. They
+     * start again from zero whenever the database is reset.
+     */
+    public Statistics getStatistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    /**
+     * Compiles every named query declared on the mapped entities, so that their query plans are cached before any
+     * request needs them.
+     *
+     * @return the number of named queries compiled
+     */
+    public int warmUp() {
+        List<String> names = new ArrayList<>();
+        for (EntityType<?> entity : entityManagerFactory.getMetamodel().getEntities()) {
+            Class<?> type = entity.getJavaType();
+            List<NamedQuery> queries = new ArrayList<>();
+            if (type.isAnnotationPresent(NamedQuery.class)) {
+                queries.add(type.getAnnotation(NamedQuery.class));
+            }
+            if (type.isAnnotationPresent(NamedQueries.class)) {
+                queries.addAll(Arrays.asList(type.getAnnotation(NamedQueries.class).value()));
+            }
+            queries.forEach(q -> names.add(q.name()));
+        }
+
+        EntityManager em = createEntityManager();
+        try {
+            names.forEach(em::createNamedQuery);
+        } finally {
+            em.close();
+        }
+
+        LOGGER.debug("warmUp(): Compiled named queries " + names);
+        return names.size();
+    }
+
     // FOR TESTING ONLY! Will wipe the database.
-    public void reset() {
+    public synchronized void reset() {
         entityManagerFactory.close();
-        entityManagerFactory = Persistence.createEntityManagerFactory("se325.assignment01.concert");
+        entityManagerFactory = createEntityManagerFactory();
+        warmUp();
+    }
+
+    private static EntityManagerFactory createEntityManagerFactory() {
+        Map<String, Object> properties = new HashMap<>();
+        if (Config.DB_URL != null) {
+            properties.put("javax.persistence.jdbc.url", Config.DB_URL);
+        }
+        return Persistence.createEntityManagerFactory("se325.assignment01.concert", properties);
     }
 
 }
@@ -0,0 +1,129 @@
+package se325.assignment01.concert.service.services;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Singleton record of database connection pool activity, fed by HikariCP.
+ * <p>
+ * Gauges (active / idle / waiting) describe the current pool, and are refreshed at most once a second. Counters
+ * (acquisitions, timeouts and their timings) accumulate across pools, i.e. they survive the database being reset.
+ */
+public class PoolMetrics implements MetricsTrackerFactory {
+
+    private static volatile PoolMetrics _instance = null;
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder acquireNanos = new LongAdder();
+    private final LongAccumulator maxAcquireNanos = new LongAccumulator(Math::max, 0);
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder usages = new LongAdder();
+    private final LongAdder usageMillis = new LongAdder();
+
+    // The stats for the pool currently in use.
+    private volatile PoolStats poolStats = null;
+
+    protected PoolMetrics() {
+    }
+
+    public static PoolMetrics instance() {
+        if (_instance == null) {
+            synchronized (PoolMetrics.class) {
+                if (_instance == null) {
+                    _instance = new PoolMetrics();
+                }
+            }
+        }
+        return _instance;
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        this.poolStats = poolStats;
+
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquisitions.increment();
+                acquireNanos.add(elapsedAcquiredNanos);
+                maxAcquireNanos.accumulate(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usages.increment();
+                usageMillis.add(elapsedBorrowedMillis);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    /**
+     * Gets the number of connections currently lent out.
+     */
+    public int getActive() {
+        PoolStats stats = poolStats;
+        return stats == null ? 0 : stats.getActiveConnections();
+    }
+
+    /**
+     * Gets the number of open connections waiting in the pool.
+     */
+    public int getIdle() {
+        PoolStats stats = poolStats;
+        return stats == null ? 0 : stats.getIdleConnections();
+    }
+
+    /**
+     * Gets the number of threads waiting for a connection.
+     */
+    public int getWaiters() {
+        PoolStats stats = poolStats;
+        return stats == null ? 0 : stats.getPendingThreads();
+    }
+
+    public int getMaxSize() {
+        PoolStats stats = poolStats;
+        return stats == null ? 0 : stats.getMaxConnections();
+    }
+
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * Gets the mean time taken to get a connection from the pool, in microseconds.
+     */
+    public double getMeanAcquireMicros() {
+        long count = acquisitions.sum();
+        return count == 0 ? 0 : (double) TimeUnit.NANOSECONDS.toMicros(acquireNanos.sum()) / count;
+    }
+
+    /**
+     * Gets the longest time taken to get a connection from the pool, in microseconds.
+     */
+    public long getMaxAcquireMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxAcquireNanos.get());
+    }
+
+    /**
+     * Gets the mean time a connection is kept before being returned to the pool, in milliseconds.
+     */
+    public double getMeanUsageMillis() {
+        long count = usages.sum();
+        return count == 0 ? 0 : (double) usageMillis.sum() / count;
+    }
+}
@@ -0,0 +1,42 @@
+package se325.assignment01.concert.service.services;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.hikaricp.internal.HikariCPConnectionProvider;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hibernate connection provider backed by a HikariCP pool, sized and tuned by {@link Config}. Named as the
+ * hibernate.connection.provider_class in persistence.xml.
+ * <p>
+ * The JDBC URL, user and password still come from persistence.xml (or {@link Config#DB_URL}). HikariCP doesn't cache
+ * prepared statements itself, so for H2 the statement cache size is applied as the database's per-connection
+ * QUERY_CACHE_SIZE setting instead. Pool activity is recorded in {@link PoolMetrics}.
+ */
+public class PooledConnectionProvider extends HikariCPConnectionProvider {
+
+    private static final String HIKARI_PREFIX = "hibernate.hikari.";
+
+    @Override
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public void configure(Map props) {
+        Map<Object, Object> settings = new HashMap<>(props);
+
+        settings.put(HIKARI_PREFIX + "poolName", "concert-db");
+        settings.put(HIKARI_PREFIX + "maximumPoolSize", String.valueOf(Config.DB_POOL_SIZE));
+        settings.put(HIKARI_PREFIX + "minimumIdle", String.valueOf(Config.DB_POOL_MIN_IDLE));
+        settings.put(HIKARI_PREFIX + "idleTimeout", String.valueOf(Config.DB_POOL_IDLE_TIMEOUT_MILLIS));
+        settings.put(HIKARI_PREFIX + "connectionTimeout", String.valueOf(Config.DB_POOL_CONNECTION_TIMEOUT_MILLIS));
+
+        Object url = settings.get(AvailableSettings.URL);
+        if (url instanceof String && ((String) url).startsWith("jdbc:h2:") && !((String) url).contains("QUERY_CACHE_SIZE")) {
+            settings.put(AvailableSettings.URL, url + ";QUERY_CACHE_SIZE=" + Config.DB_STATEMENT_CACHE_SIZE);
+        }
+
+        super.configure(settings);
+
+        unwrap(HikariDataSource.class).setMetricsTrackerFactory(PoolMetrics.instance());
+    }
+}
@@ -0,0 +1,158 @@
+package se325.assignment01.concert.service.services;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Singleton record of how long the service spends handling requests.
+ * <p>
+ * Each endpoint (e.g. "GET /concert-service/concerts/{id}") gets a count of the responses it has sent with each status
+ * code, and a latency histogram, fed by {@link se325.assignment01.concert.service.jaxrs.MetricsFilter}. Separately, the
+ * time spent with an EntityManager open (fed by {@link EntityManagerMetrics}) and the time spent mapping domain objects
+ * to DTOs are each timed across all requests.
+ * <p>
+ * Latencies are recorded with microsecond resolution in HdrHistograms, which keep three significant digits at any
+ * magnitude, so high percentiles (p99, p99.9) stay accurate however long the service has been up. Everything
+ * accumulates from start-up, and can be read in the Prometheus text format with {@link #toText()}.
+ */
+public class RequestMetrics {
+
+    private static volatile RequestMetrics _instance = null;
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentSkipListMap<>();
+    private final Timer entityManager = new Timer();
+    private final Timer mapping = new Timer();
+
+    protected RequestMetrics() {
+    }
+
+    public static RequestMetrics instance() {
+        if (_instance == null) {
+            synchronized (RequestMetrics.class) {
+                if (_instance == null) {
+                    _instance = new RequestMetrics();
+                }
+            }
+        }
+        return _instance;
+    }
+
+    /**
+     * Records a request to the given endpoint, which was answered with the given status after the given time.
+     */
+    public void recordRequest(String endpoint, int status, long elapsedNanos) {
+        Endpoint metrics = endpoints.computeIfAbsent(endpoint, e -> new Endpoint());
+        metrics.latency.record(elapsedNanos);
+        metrics.statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+    }
+
+    /**
+     * Records the time between an EntityManager being opened and closed.
+     */
+    public void recordEntityManager(long elapsedNanos) {
+        entityManager.record(elapsedNanos);
+    }
+
+    /**
+     * Runs the given mapping from domain objects to DTOs, recording how long it takes.
+     */
+    public <T> T timeMapping(Supplier<T> mappingFunc) {
+        long start = System.nanoTime();
+        try {
+            return mappingFunc.get();
+        } finally {
+            recordMapping(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records the time taken to map domain objects to DTOs, for mappings that can't be run by
+     * {@link #timeMapping(Supplier)} in one go.
+     */
+    public void recordMapping(long elapsedNanos) {
+        mapping.record(elapsedNanos);
+    }
+
+    /**
+     * Gets the number of requests recorded for the given endpoint.
+     */
+    public long getCount(String endpoint) {
+        Endpoint metrics = endpoints.get(endpoint);
+        return metrics == null ? 0 : metrics.latency.histogram.getTotalCount();
+    }
+
+    /**
+     * Writes out all metrics in the Prometheus text exposition format (version 0.0.4). Latencies are reported in
+     * seconds, as summaries with p50, p90, p99 and p99.9 quantiles.
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+
+        text.append("# HELP concert_responses_total Responses sent, by endpoint and status code.\n");
+        text.append("# TYPE concert_responses_total counter\n");
+        endpoints.forEach((endpoint, metrics) -> new ConcurrentSkipListMap<>(metrics.statuses).forEach((status, count) ->
+                text.append("concert_responses_total{endpoint=\"").append(escape(endpoint))
+                        .append("\",status=\"").append(status).append("\"} ").append(count.sum()).append('\n')));
+
+        text.append("# HELP concert_request_duration_seconds Time taken to handle each request, by endpoint.\n");
+        text.append("# TYPE concert_request_duration_seconds summary\n");
+        endpoints.forEach((endpoint, metrics) ->
+                metrics.latency.appendSummary(text, "concert_request_duration_seconds", "endpoint=\"" + escape(endpoint) + "\""));
+
+        text.append("# HELP concert_entity_manager_duration_seconds Time each EntityManager was open for.\n");
+        text.append("# TYPE concert_entity_manager_duration_seconds summary\n");
+        entityManager.appendSummary(text, "concert_entity_manager_duration_seconds", null);
+
+        text.append("# HELP concert_dto_mapping_duration_seconds Time taken to map domain objects to DTOs.\n");
+        text.append("# TYPE concert_dto_mapping_duration_seconds summary\n");
+        mapping.appendSummary(text, "concert_dto_mapping_duration_seconds", null);
+
+        return text.toString();
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static class Endpoint {
+        private final Timer latency = new Timer();
+        private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * A latency histogram, plus the exact total of all latencies recorded (which the histogram alone can't give).
+     */
+    private static class Timer {
+
+        // Auto-resizing, so there's no upper limit on the latencies it can hold.
+        private final ConcurrentHistogram histogram = new ConcurrentHistogram(3);
+        private final LongAdder totalNanos = new LongAdder();
+
+        void record(long elapsedNanos) {
+            histogram.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(elapsedNanos)));
+            totalNanos.add(elapsedNanos);
+        }
+
+        void appendSummary(StringBuilder text, String name, String labels) {
+            Histogram snapshot = histogram.copy();
+            String prefix = labels == null ? "" : labels + ",";
+
+            for (double quantile : QUANTILES) {
+                text.append(name).append('{').append(prefix).append("quantile=\"").append(quantile).append("\"} ")
+                        .append(snapshot.getValueAtPercentile(quantile * 100) / 1e6).append('\n');
+            }
+            String suffix = labels == null ? " " : "{" + labels + "} ";
+            text.append(name).append("_sum").append(suffix).append(totalNanos.sum() / 1e9).append('\n');
+            text.append(name).append("_count").append(suffix).append(snapshot.getTotalCount()).append('\n');
+        }
+    }
+}
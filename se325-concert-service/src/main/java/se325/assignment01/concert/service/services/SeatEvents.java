@@ -0,0 +1,111 @@
+package se325.assignment01.concert.service.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.common.dto.SeatDeltaDTO;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.sse.OutboundSseEvent;
+import javax.ws.rs.sse.Sse;
+import javax.ws.rs.sse.SseBroadcaster;
+import javax.ws.rs.sse.SseEventSink;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Singleton registry of Server-Sent Event streams that are watching the seats for a show (concert / date pair).
+ * <p>
+ * Each show has one {@link SseBroadcaster}, which all streams for that show are registered with. Publishing a change
+ * writes it to every stream asynchronously, so open streams don't tie up a thread each. Streams are dropped by their
+ * broadcaster when the client goes away.
+ * <p>
+ * A new stream is first sent a "snapshot" event with all currently taken seats, and then a "delta" event (a
+ * {@link SeatDeltaDTO}) whenever seats for its show are booked or released.
+ */
+public class SeatEvents {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(SeatEvents.class);
+
+    public static final String SNAPSHOT_EVENT = "snapshot";
+    public static final String DELTA_EVENT = "delta";
+
+    private static volatile SeatEvents _instance = null;
+
+    private final ConcurrentMap<ShowKey, SseBroadcaster> broadcasters = new ConcurrentHashMap<>();
+
+    // All broadcasters and events are created through the same Sse instance, which is supplied by the first stream.
+    private volatile Sse sse = null;
+
+    protected SeatEvents() {
+    }
+
+    public static SeatEvents instance() {
+        if (_instance == null) {
+            synchronized (SeatEvents.class) {
+                if (_instance == null) {
+                    _instance = new SeatEvents();
+                }
+            }
+        }
+        return _instance;
+    }
+
+    /**
+     * Starts sending seat changes for the given show to the given stream, beginning with a snapshot of the seats that
+     * are currently taken.
+     */
+    public void register(long concertId, LocalDateTime date, SseEventSink sink, Sse sse) {
+        if (this.sse == null) {
+            this.sse = sse;
+        }
+
+        SseBroadcaster broadcaster = broadcasters.computeIfAbsent(new ShowKey(concertId, date), k -> sse.newBroadcaster());
+        broadcaster.register(sink);
+
+        // Registered first, so nothing published from here on is missed. Deltas describe the new state of each seat,
+        // so one that's already reflected in the snapshot does no harm.
+        List<String> taken = SeatInventory.instance().getTakenLabels(concertId, date);
+        sink.send(newEvent(SNAPSHOT_EVENT, new SeatDeltaDTO(taken, Collections.emptyList())));
+    }
+
+    /**
+     * Tells everyone watching the given show that the given seats are now booked. Every concert on the same date shares
+     * its seats (see {@link SeatInventory}), so everyone watching any of them is told.
+     */
+    public void publishBooked(long concertId, LocalDateTime date, List<String> labels) {
+        publish(date, new SeatDeltaDTO(labels, Collections.emptyList()));
+    }
+
+    /**
+     * Tells everyone watching the given show (or any other concert on the same date) that the given seats are available
+     * again.
+     */
+    public void publishReleased(long concertId, LocalDateTime date, List<String> labels) {
+        publish(date, new SeatDeltaDTO(Collections.emptyList(), labels));
+    }
+
+    private void publish(LocalDateTime date, SeatDeltaDTO delta) {
+        for (long showConcertId : SeatInventory.instance().getConcertIds(date)) {
+            SseBroadcaster broadcaster = broadcasters.get(new ShowKey(showConcertId, date));
+            if (broadcaster == null) {
+                continue;
+            }
+
+            broadcaster.broadcast(newEvent(DELTA_EVENT, delta)).exceptionally(e -> {
+                LOGGER.warn("publish(): Failed to send " + delta + " for concert " + showConcertId + " on " + date, e);
+                return null;
+            });
+        }
+    }
+
+    private OutboundSseEvent newEvent(String name, SeatDeltaDTO delta) {
+        return sse.newEventBuilder()
+                .name(name)
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(SeatDeltaDTO.class, delta)
+                .build();
+    }
+}
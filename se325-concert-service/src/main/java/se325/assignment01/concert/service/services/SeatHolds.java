@@ -0,0 +1,207 @@
+package se325.assignment01.concert.service.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.service.domain.Booking;
+import se325.assignment01.concert.service.domain.Seat;
+import se325.assignment01.concert.service.util.TimingWheel;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Singleton that keeps track of soft holds on seats, and releases them if they aren't confirmed in time.
+ * <p>
+ * A hold is a {@link Booking} with status {@link Booking.Status#Soft}, whose seats are booked in the database and taken
+ * in the {@link SeatInventory} just like a confirmed booking's. Pending holds are kept in a {@link TimingWheel}, which a
+ * background sweeper advances every {@link Config#HOLD_SWEEP_INTERVAL_MILLIS}ms. Holds that come out of the wheel are
+ * cancelled and their seats released, both in the database and in the inventory.
+ * <p>
+ * The wheel is also what usually decides whether a confirmation or an expiry gets to a hold first: whichever takes the
+ * hold out of the wheel owns it. A hold is only added once its booking has committed, so a confirmation that doesn't find
+ * it in the wheel falls back to the booking's status (and version) in the database.
+ */
+public class SeatHolds {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(SeatHolds.class);
+
+    private static final int WHEEL_SIZE = 512;
+
+    private static volatile SeatHolds _instance = null;
+
+    private final TimingWheel<Hold> wheel;
+    private final ScheduledExecutorService sweeper;
+
+    protected SeatHolds() {
+        wheel = new TimingWheel<>(Config.HOLD_SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS, WHEEL_SIZE);
+
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "seat-hold-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleAtFixedRate(this::sweep,
+                Config.HOLD_SWEEP_INTERVAL_MILLIS, Config.HOLD_SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public static SeatHolds instance() {
+        if (_instance == null) {
+            synchronized (SeatHolds.class) {
+                if (_instance == null) {
+                    _instance = new SeatHolds();
+                }
+            }
+        }
+        return _instance;
+    }
+
+    /**
+     * Starts the clock on a newly created hold. It will be released after {@link Config#HOLD_TTL_SECONDS} unless it's
+     * taken first with {@link #take(long)}.
+     */
+    public void add(long bookingId, long concertId, LocalDateTime date, List<String> seatLabels) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(Config.HOLD_TTL_SECONDS);
+        wheel.schedule(bookingId, new Hold(bookingId, concertId, date, seatLabels, deadline), deadline);
+    }
+
+    /**
+     * Takes a pending hold out of the wheel, so that it can be confirmed without being released in the meantime.
+     *
+     * @return the hold, or null if it isn't pending (because it's expired, or has already been taken)
+     */
+    public Hold take(long bookingId) {
+        return wheel.cancel(bookingId);
+    }
+
+    /**
+     * Puts a hold obtained from {@link #take(long)} back, with its original deadline. Used if confirming it failed.
+     */
+    public void restore(Hold hold) {
+        wheel.schedule(hold.bookingId, hold, hold.deadline);
+    }
+
+    /**
+     * Re-registers any holds that are still soft in the database, e.g. after a restart. Holds that should already have
+     * expired will be released on the next sweep.
+     */
+    public void recover() {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            em.getTransaction().begin();
+            List<Booking> softBookings = em
+                    .createNamedQuery("Booking.findByStatus", Booking.class)
+                    .setParameter("status", Booking.Status.Soft)
+                    .getResultList();
+
+            for (Booking booking : softBookings) {
+                Duration remaining = Duration.between(LocalDateTime.now(),
+                        booking.getTimeCreated().plusSeconds(Config.HOLD_TTL_SECONDS));
+                long deadline = System.nanoTime() + Math.max(0, remaining.toNanos());
+                List<String> labels = booking.getSeats().stream().map(Seat::getLabel).collect(Collectors.toList());
+
+                wheel.schedule(booking.getId(),
+                        new Hold(booking.getId(), booking.getConcert().getId(), booking.getDate(), labels, deadline), deadline);
+            }
+            em.getTransaction().commit();
+
+            LOGGER.debug("recover(): Recovered " + softBookings.size() + " soft holds");
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Forgets all pending holds, without releasing them.
+     */
+    public void clear() {
+        wheel.clear();
+    }
+
+    /**
+     * Stops the background sweeper. Pending holds are left soft in the database, and picked up again by
+     * {@link #recover()} the next time the service starts.
+     */
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Gets the number of pending holds.
+     */
+    public int size() {
+        return wheel.size();
+    }
+
+    private void sweep() {
+        for (Hold hold : wheel.advance(System.nanoTime())) {
+            try {
+                release(hold);
+            } catch (RuntimeException e) {
+                LOGGER.error("sweep(): Failed to release hold " + hold.bookingId + ", will retry", e);
+                wheel.schedule(hold.bookingId, hold, System.nanoTime());
+            }
+        }
+    }
+
+    /**
+     * Cancels an expired hold's booking and frees its seats.
+     */
+    private void release(Hold hold) {
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            em.getTransaction().begin();
+
+            Booking booking = em.find(Booking.class, hold.bookingId);
+            if (booking == null || booking.getStatus() != Booking.Status.Soft) {
+                em.getTransaction().commit();
+                return;
+            }
+
+            booking.cancel();
+            booking.getSeats().forEach(Seat::unbook);
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+
+        SeatInventory inventory = SeatInventory.instance();
+        inventory.release(hold.concertId, hold.date, hold.seatLabels);
+        inventory.recordReleased(hold.concertId, hold.date, hold.seatLabels.size());
+        SeatEvents.instance().publishReleased(hold.concertId, hold.date, hold.seatLabels);
+
+        LOGGER.info("release(): Released expired hold " + hold.bookingId);
+    }
+
+    /**
+     * A pending hold.
+     */
+    public static class Hold {
+        private final long bookingId;
+        private final long concertId;
+        private final LocalDateTime date;
+        private final List<String> seatLabels;
+        private final long deadline;
+
+        Hold(long bookingId, long concertId, LocalDateTime date, List<String> seatLabels, long deadline) {
+            this.bookingId = bookingId;
+            this.concertId = concertId;
+            this.date = date;
+            this.seatLabels = Collections.unmodifiableList(seatLabels);
+            this.deadline = deadline;
+        }
+
+        public long getBookingId() {
+            return bookingId;
+        }
+    }
+}
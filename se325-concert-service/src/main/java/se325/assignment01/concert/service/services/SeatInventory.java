@@ -0,0 +1,409 @@
+package se325.assignment01.concert.service.services;
+
+import org.hibernate.jpa.QueryHints;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se325.assignment01.concert.service.domain.Concert;
+import se325.assignment01.concert.service.util.TheatreLayout;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+
+/**
+ * Singleton in-memory record of which seats are taken at each show (concert / date pair).
+ * <p>
+ * Seats belong to a date rather than a concert (the SEATS table is keyed by date and label), so every concert on a
+ * given date shares the same seats: a seat booked for one of them is taken for all of them, and they all report the
+ * same counts. The seats for each date are represented by one bitmask per row of the theatre, where bit n is set if
+ * the (n + 1)th seat in that row is taken. This lets {@link ConcertResource} check and claim all of a booking's seats in a single atomic step
+ * before it goes anywhere near the database, so requests that are bound to fail never open a transaction.
+ * <p>
+ * The database remains the durable record of seat state - the inventory is rebuilt from the SEATS table by
+ * {@link #rebuild()} whenever the application starts or the database is reset.
+ */
+public class SeatInventory {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(SeatInventory.class);
+
+    private static volatile SeatInventory _instance = null;
+
+    /**
+     * The outcome of an attempt to claim seats.
+     */
+    public enum ClaimResult {
+        /**
+         * All requested seats were free, and are now taken.
+         */
+        CLAIMED,
+
+        /**
+         * At least one requested seat was already taken (or doesn't exist). Nothing was claimed.
+         */
+        CONFLICT,
+
+        /**
+         * The concert isn't scheduled on the requested date. Nothing was claimed.
+         */
+        UNKNOWN_SHOW
+    }
+
+    // Replaced wholesale by rebuild(), and otherwise only read.
+    private volatile Shows shows = new Shows(new HashMap<>(), new HashMap<>());
+
+    protected SeatInventory() {
+    }
+
+    public static SeatInventory instance() {
+        if (_instance == null) {
+            synchronized (SeatInventory.class) {
+                if (_instance == null) {
+                    _instance = new SeatInventory();
+                }
+            }
+        }
+        return _instance;
+    }
+
+    /**
+     * Returns true if the given concert is scheduled on the given date.
+     */
+    public boolean isScheduled(long concertId, LocalDateTime date) {
+        return getShow(concertId, date) != null;
+    }
+
+    /**
+     * Gets all dates on which the given concert is scheduled, in order. Returns an empty set for unknown concerts.
+     */
+    public NavigableSet<LocalDateTime> getDates(long concertId) {
+        NavigableMap<LocalDateTime, ShowSeats> dates = shows.byConcert.get(concertId);
+        return dates == null ? Collections.emptyNavigableSet() : Collections.unmodifiableNavigableSet(dates.navigableKeySet());
+    }
+
+    /**
+     * Gets the ids of all concerts scheduled on the given date, which all share its seats. Returns an empty list if
+     * nothing is scheduled on that date.
+     */
+    public List<Long> getConcertIds(LocalDateTime date) {
+        ShowSeats seats = date == null ? null : shows.byDate.get(date);
+        return seats == null ? Collections.emptyList() : Collections.unmodifiableList(seats.concertIds);
+    }
+
+    /**
+     * Gets the number of seats whose bookings have been committed for the given show, or -1 if the concert isn't
+     * scheduled on that date. This is a counter lookup, not a database query.
+     */
+    public int getNumSeatsBooked(long concertId, LocalDateTime date) {
+        ShowSeats seats = getShow(concertId, date);
+        return seats == null ? -1 : seats.getNumBooked();
+    }
+
+    /**
+     * Gets the number of seats still available for the given show, or -1 if the concert isn't scheduled on that date.
+     */
+    public int getNumSeatsRemaining(long concertId, LocalDateTime date) {
+        int numBooked = getNumSeatsBooked(concertId, date);
+        return numBooked < 0 ? -1 : TheatreLayout.NUM_SEATS_IN_THEATRE - numBooked;
+    }
+
+    /**
+     * Gets the labels of all seats that are taken for the given show, including those claimed by bookings that are
+     * still in flight. Returns null if the concert isn't scheduled on that date.
+     */
+    public List<String> getTakenLabels(long concertId, LocalDateTime date) {
+        ShowSeats seats = getShow(concertId, date);
+        if (seats == null) {
+            return null;
+        }
+
+        int[] rows = seats.getRows();
+        List<String> labels = new ArrayList<>();
+        for (int rowIndex = 0; rowIndex < rows.length; rowIndex++) {
+            for (int seatIndex = 0; seatIndex < TheatreLayout.NUM_SEATS_PER_ROW; seatIndex++) {
+                if ((rows[rowIndex] & (1 << seatIndex)) != 0) {
+                    labels.add(TheatreLayout.labelFor(rowIndex, seatIndex));
+                }
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * Gets the taken seats on the given date (for every concert on it), as one bitmask per row (bit n of element r is
+     * set if the (n + 1)th seat in row r is taken). Like {@link #getTakenLabels(long, LocalDateTime)}, this includes
+     * seats claimed by bookings that are still in flight. Returns null if nothing is scheduled on that date.
+     */
+    public int[] getTakenRows(LocalDateTime date) {
+        ShowSeats seats = date == null ? null : shows.byDate.get(date);
+        return seats == null ? null : seats.getRows();
+    }
+
+    /**
+     * Atomically claims all of the given seats for the given show. Either all seats are claimed, or none are.
+     *
+     * @param concertId the concert id
+     * @param date      the concert date
+     * @param labels    the labels of the seats to claim
+     * @return the outcome of the claim
+     */
+    public ClaimResult claim(long concertId, LocalDateTime date, Collection<String> labels) {
+        ShowSeats seats = getShow(concertId, date);
+        if (seats == null) {
+            return ClaimResult.UNKNOWN_SHOW;
+        }
+
+        int[] mask = toMask(labels);
+        if (mask == null) {
+            return ClaimResult.CONFLICT;
+        }
+
+        return seats.claim(mask) ? ClaimResult.CLAIMED : ClaimResult.CONFLICT;
+    }
+
+    /**
+     * Atomically finds and claims the best block of adjacent seats in a single row for the given show. The best block
+     * is in the row nearest the front of the theatre that has one, and as close to the middle of that row as possible.
+     * Only rows firstRow to lastRow (inclusive, zero-based) are searched.
+     *
+     * @param concertId the concert id
+     * @param date      the concert date
+     * @param numSeats  the number of adjacent seats wanted
+     * @param firstRow  the first row to search
+     * @param lastRow   the last row to search
+     * @return the labels of the claimed seats, in order, or null if there's no such show or no such block of seats
+     */
+    public List<String> claimBestAvailable(long concertId, LocalDateTime date, int numSeats, int firstRow, int lastRow) {
+        ShowSeats seats = getShow(concertId, date);
+        if (seats == null || numSeats < 1 || numSeats > TheatreLayout.NUM_SEATS_PER_ROW) {
+            return null;
+        }
+
+        int[] block = seats.claimBlock(numSeats, Math.max(0, firstRow), Math.min(TheatreLayout.NUM_ROWS - 1, lastRow));
+        if (block == null) {
+            return null;
+        }
+
+        List<String> labels = new ArrayList<>(numSeats);
+        for (int seatIndex = block[1]; seatIndex < block[1] + numSeats; seatIndex++) {
+            labels.add(TheatreLayout.labelFor(block[0], seatIndex));
+        }
+        return labels;
+    }
+
+    /**
+     * Releases seats previously taken by {@link #claim(long, LocalDateTime, Collection)}, e.g. because the database
+     * write that was meant to follow the claim failed.
+     */
+    public void release(long concertId, LocalDateTime date, Collection<String> labels) {
+        ShowSeats seats = getShow(concertId, date);
+        int[] mask = toMask(labels);
+        if (seats != null && mask != null) {
+            seats.release(mask);
+        }
+    }
+
+    /**
+     * Records that the given number of previously claimed seats for the given show have now been committed to the
+     * database, updating the show's booked / remaining counters.
+     */
+    public void recordBooked(long concertId, LocalDateTime date, int numSeats) {
+        ShowSeats seats = getShow(concertId, date);
+        if (seats != null) {
+            seats.addBooked(numSeats);
+        }
+    }
+
+    /**
+     * Records that the given number of committed seats for the given show have been released again in the database
+     * (e.g. because a hold on them expired), updating the show's booked / remaining counters.
+     */
+    public void recordReleased(long concertId, LocalDateTime date, int numSeats) {
+        recordBooked(concertId, date, -numSeats);
+    }
+
+    /**
+     * Discards all in-memory state and reloads it from the database. Every date of every concert gets an entry, with
+     * the seats that are booked in the SEATS table marked as taken. Concerts on the same date share a single entry.
+     */
+    public void rebuild() {
+        Map<Long, NavigableMap<LocalDateTime, ShowSeats>> byConcert = new HashMap<>();
+        Map<LocalDateTime, ShowSeats> byDate = new HashMap<>();
+        Map<LocalDateTime, int[]> bookedByDate = new HashMap<>();
+
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            em.getTransaction().begin();
+
+            List<Object[]> bookedSeats = em
+                    .createNamedQuery("Seat.findBookedDatesAndLabels", Object[].class)
+                    .getResultList();
+            for (Object[] row : bookedSeats) {
+                int[] rows = bookedByDate.computeIfAbsent((LocalDateTime) row[0], d -> new int[TheatreLayout.NUM_ROWS]);
+                String label = (String) row[1];
+                rows[TheatreLayout.rowIndexOf(label)] |= 1 << TheatreLayout.seatIndexOf(label);
+            }
+
+            List<Concert> concerts = em.createNamedQuery("Concert.findAllWithDetails", Concert.class)
+                    .setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false)
+                    .getResultList();
+            for (Concert concert : concerts) {
+                for (LocalDateTime date : concert.getDates()) {
+                    ShowSeats seats = byDate.computeIfAbsent(date, d -> new ShowSeats(bookedByDate.get(d)));
+                    seats.concertIds.add(concert.getId());
+                    byConcert.computeIfAbsent(concert.getId(), id -> new TreeMap<>()).put(date, seats);
+                }
+            }
+
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+
+        shows = new Shows(byConcert, byDate);
+        LOGGER.debug("rebuild(): Loaded seat inventory for " + byConcert.size() + " concerts on " + byDate.size() +
+                " dates");
+    }
+
+    private ShowSeats getShow(long concertId, LocalDateTime date) {
+        NavigableMap<LocalDateTime, ShowSeats> dates = shows.byConcert.get(concertId);
+        return dates == null || date == null ? null : dates.get(date);
+    }
+
+    /**
+     * Converts the given labels into one bitmask per row. Returns null if any label is invalid or repeated.
+     */
+    private static int[] toMask(Collection<String> labels) {
+        if (labels == null) {
+            return null;
+        }
+
+        int[] mask = new int[TheatreLayout.NUM_ROWS];
+        for (String label : labels) {
+            int rowIndex = TheatreLayout.rowIndexOf(label);
+            if (rowIndex < 0) {
+                return null;
+            }
+
+            int bit = 1 << TheatreLayout.seatIndexOf(label);
+            if ((mask[rowIndex] & bit) != 0) {
+                return null;
+            }
+            mask[rowIndex] |= bit;
+        }
+        return mask;
+    }
+
+    /**
+     * Everything loaded by {@link #rebuild()}, so that it can be replaced in one step.
+     */
+    private static class Shows {
+        // Concert id -> date -> seats.
+        private final Map<Long, NavigableMap<LocalDateTime, ShowSeats>> byConcert;
+        // Date -> seats, shared with every concert on that date.
+        private final Map<LocalDateTime, ShowSeats> byDate;
+
+        Shows(Map<Long, NavigableMap<LocalDateTime, ShowSeats>> byConcert, Map<LocalDateTime, ShowSeats> byDate) {
+            this.byConcert = byConcert;
+            this.byDate = byDate;
+        }
+    }
+
+    /**
+     * The seat bitmasks for a single date, along with a count of the seats whose bookings have been committed. The
+     * bitmasks also include seats that have been claimed by bookings which are still in flight. All access goes through
+     * this object's monitor, so claims for different dates never contend with each other.
+     */
+    static class ShowSeats {
+
+        // The concerts on this date. Only added to by rebuild(), before the inventory is published.
+        private final List<Long> concertIds = new ArrayList<>();
+
+        private final int[] rows;
+        private int numBooked;
+
+        ShowSeats(int[] booked) {
+            rows = booked == null ? new int[TheatreLayout.NUM_ROWS] : booked.clone();
+            for (int row : rows) {
+                numBooked += Integer.bitCount(row);
+            }
+        }
+
+        synchronized boolean claim(int[] mask) {
+            for (int i = 0; i < rows.length; i++) {
+                if ((rows[i] & mask[i]) != 0) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] |= mask[i];
+            }
+            return true;
+        }
+
+        /**
+         * Claims the most central free block of numSeats seats in the front-most row (from firstRow to lastRow) that
+         * has one, returning its row and first seat index, or null if there isn't one. Each row is checked with a few
+         * bitwise operations, whatever its state.
+         */
+        synchronized int[] claimBlock(int numSeats, int firstRow, int lastRow) {
+            int allSeats = (1 << TheatreLayout.NUM_SEATS_PER_ROW) - 1;
+            int blockMask = (1 << numSeats) - 1;
+            // The first seat of a perfectly centred block.
+            int centre = (TheatreLayout.NUM_SEATS_PER_ROW - numSeats) / 2;
+
+            for (int rowIndex = firstRow; rowIndex <= lastRow; rowIndex++) {
+                // Bit n of starts is set if the numSeats seats starting at seat n are all free.
+                int starts = ~rows[rowIndex] & allSeats;
+                for (int i = 1; i < numSeats; i++) {
+                    starts &= starts >>> 1;
+                }
+                if (starts == 0) {
+                    continue;
+                }
+
+                // The nearest start at or before the centre, and the nearest after it. Take whichever is closer.
+                int before = starts & ((2 << centre) - 1);
+                int after = starts >>> (centre + 1);
+                int start;
+                if (before == 0) {
+                    start = centre + 1 + Integer.numberOfTrailingZeros(after);
+                } else {
+                    start = 31 - Integer.numberOfLeadingZeros(before);
+                    if (after != 0 && centre + 1 + Integer.numberOfTrailingZeros(after) - centre < centre - start) {
+                        start = centre + 1 + Integer.numberOfTrailingZeros(after);
+                    }
+                }
+
+                rows[rowIndex] |= blockMask << start;
+                return new int[]{rowIndex, start};
+            }
+            return null;
+        }
+
+        synchronized void release(int[] mask) {
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] &= ~mask[i];
+            }
+        }
+
+        synchronized void addBooked(int numSeats) {
+            numBooked += numSeats;
+        }
+
+        synchronized int getNumBooked() {
+            return numBooked;
+        }
+
+        synchronized int[] getRows() {
+            return rows.clone();
+        }
+    }
+}
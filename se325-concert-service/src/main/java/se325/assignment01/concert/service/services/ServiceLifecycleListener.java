@@ -0,0 +1,63 @@
+package se325.assignment01.concert.service.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import se325.assignment01.concert.service.util.ConcertUtils;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Starts up and shuts down the service along with the web app. Registered in web.xml.
+ * <p>
+ * On start-up, the database and all in-memory state is initialised and warmed up before the web app is deployed, and
+ * only then does the service report itself as ready (see {@link #isReady()}). On shutdown, the service stops reporting
+ * ready, and its background threads are stopped so that they don't outlive it (and keep its classes loaded).
+ */
+public class ServiceLifecycleListener implements ServletContextListener {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(ServiceLifecycleListener.class);
+
+    private static volatile boolean ready = false;
+
+    /**
+     * Returns true once the service has finished starting up, until it starts shutting down.
+     */
+    public static boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+        long start = System.currentTimeMillis();
+
+        // Bootstrap the EntityManagerFactory and connection pool up front, so that their cost isn't counted as part of
+        // seat initialisation (see ConcertUtils#getLastInitDurationMillis()).
+        PersistenceManager persistenceManager = PersistenceManager.instance();
+
+        ConcertUtils.initConcerts();
+        SeatInventory.instance().rebuild();
+        SeatHolds.instance().recover();
+
+        int numQueries = persistenceManager.warmUp();
+        CatalogueCache.instance().get();
+
+        ready = true;
+        LOGGER.info("contextInitialized(): Ready in " + (System.currentTimeMillis() - start) + "ms, " +
+                numQueries + " named queries compiled");
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        ready = false;
+
+        LOGGER.info("contextDestroyed(): Shutting down background tasks");
+        SeatHolds.instance().shutdown();
+        BookingLanes lanes = BookingLanes.instanceIfStarted();
+        if (lanes != null) {
+            lanes.shutdown();
+        }
+        BackgroundExecutor.instance().shutdown();
+    }
+}
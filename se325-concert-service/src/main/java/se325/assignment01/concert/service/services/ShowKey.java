@@ -0,0 +1,46 @@
+package se325.assignment01.concert.service.services;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Identifies a single performance ("show") of a concert - i.e. a concert id / date pair. Used as the key for the
+ * in-memory structures that are kept per show.
+ */
+public final class ShowKey {
+
+    private final long concertId;
+    private final LocalDateTime date;
+
+    public ShowKey(long concertId, LocalDateTime date) {
+        this.concertId = concertId;
+        this.date = date;
+    }
+
+    public long getConcertId() {
+        return concertId;
+    }
+
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ShowKey showKey = (ShowKey) o;
+        return concertId == showKey.concertId &&
+                Objects.equals(date, showKey.date);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(concertId, date);
+    }
+
+    @Override
+    public String toString() {
+        return concertId + "@" + date;
+    }
+}
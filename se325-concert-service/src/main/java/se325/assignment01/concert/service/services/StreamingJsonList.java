@@ -0,0 +1,96 @@
+package se325.assignment01.concert.service.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.Query;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Function;
+
+/**
+ * A response body that writes the results of a query as a JSON array, one row at a time.
+ * <p>
+ * Rows are scrolled through rather than loaded as a list, and each is mapped to a DTO and written out before the next
+ * is read. Every {@link Config#STREAMING_BATCH_SIZE} rows the EntityManager is cleared, so the entities already written
+ * can be garbage collected. However long the list is, only one batch of entities, one DTO, and the generator's buffer
+ * are held at once, where building the whole list first would hold every entity, every DTO and the serialized body.
+ * <p>
+ * The query only runs when the body is written, in an EntityManager and transaction of its own, so nothing is left
+ * open if the body is never written. Anything that can fail with an error status (authentication, validation) must be
+ * checked before the response is returned, since the status has already been sent by the time the query runs.
+ *
+ * @param <TDomain> the type of entity the query returns
+ * @param <TDTO>    the type of DTO each entity is written as
+ */
+public class StreamingJsonList<TDomain, TDTO> implements StreamingOutput {
+
+    // Writes the same JSON as the JAX-RS provider does for a list, but without flushing the stream after every element.
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private final Function<EntityManager, TypedQuery<TDomain>> queryFunc;
+    private final Function<TDomain, TDTO> mappingFunc;
+
+    /**
+     * @param queryFunc   creates the query to run, given the EntityManager to run it in
+     * @param mappingFunc maps each result to the DTO written for it
+     */
+    public StreamingJsonList(Function<EntityManager, TypedQuery<TDomain>> queryFunc, Function<TDomain, TDTO> mappingFunc) {
+        this.queryFunc = queryFunc;
+        this.mappingFunc = mappingFunc;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        long mappingNanos = 0;
+
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(output)) {
+            em.getTransaction().begin();
+
+            @SuppressWarnings("unchecked")
+            Query<TDomain> query = queryFunc.apply(em).unwrap(Query.class);
+            try (ScrollableResults results = query
+                    .setFetchSize(Config.STREAMING_BATCH_SIZE)
+                    .setReadOnly(true)
+                    .scroll(ScrollMode.FORWARD_ONLY)) {
+
+                generator.writeStartArray();
+                int numWritten = 0;
+                while (results.next()) {
+                    @SuppressWarnings("unchecked")
+                    TDomain domainObject = (TDomain) results.get(0);
+
+                    long start = System.nanoTime();
+                    TDTO dto = mappingFunc.apply(domainObject);
+                    mappingNanos += System.nanoTime() - start;
+
+                    MAPPER.writeValue(generator, dto);
+
+                    // Let go of the entities written so far.
+                    if (++numWritten % Config.STREAMING_BATCH_SIZE == 0) {
+                        em.clear();
+                    }
+                }
+                generator.writeEndArray();
+            }
+
+            em.getTransaction().commit();
+
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            em.close();
+            RequestMetrics.instance().recordMapping(mappingNanos);
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package se325.assignment01.concert.service.services;
+
+import se325.assignment01.concert.common.dto.ConcertInfoSubscriptionDTO;
+
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.CompletionCallback;
+import javax.ws.rs.container.ConnectionCallback;
+import javax.ws.rs.core.Response;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Singleton registry of parked concert info subscriptions.
+ * <p>
+ * Subscriptions are grouped by show (concert / date pair), and within each show are ordered by the percentageBooked
+ * threshold they're waiting for. This means a booking only ever looks at subscribers for its own show, and of those,
+ * only at the ones whose threshold has now been crossed. Each show has its own lock, so bookings for different shows
+ * never contend with each other.
+ * <p>
+ * Subscriptions are bounded in both time and number. Each one waits at most {@link Config#SUBSCRIPTION_TTL_SECONDS}
+ * (or less, if it asks for a shorter TTL) before it's answered with 204 No Content, and no more than {@link Config#SUBSCRIPTION_MAX_PER_USER} (per user) or
+ * {@link Config#SUBSCRIPTION_MAX_TOTAL} (overall) may be waiting at once. Subscriptions remove themselves once their
+ * {@link AsyncResponse} completes for any reason, or once the client disconnects (where the JAX-RS implementation
+ * reports that - otherwise, the TTL makes sure they're cleaned up eventually).
+ */
+public class SubscriptionRegistry {
+
+    private static volatile SubscriptionRegistry _instance = null;
+
+    /**
+     * The outcome of an attempt to add a subscription.
+     */
+    public enum AddResult {
+        /**
+         * The subscription is now waiting to be notified.
+         */
+        ADDED,
+
+        /**
+         * The user already has as many subscriptions waiting as they're allowed. Nothing was added.
+         */
+        USER_LIMIT_REACHED,
+
+        /**
+         * As many subscriptions are waiting as the service allows. Nothing was added.
+         */
+        LIMIT_REACHED
+    }
+
+    private final ConcurrentMap<ShowKey, ShowSubscriptions> shows = new ConcurrentHashMap<>();
+
+    // User id -> number of waiting subscriptions. Users with none have no entry. Guarded by this.
+    private final Map<Long, Integer> countsByUser = new HashMap<>();
+    private int count = 0;
+
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder disconnected = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    protected SubscriptionRegistry() {
+    }
+
+    public static SubscriptionRegistry instance() {
+        if (_instance == null) {
+            synchronized (SubscriptionRegistry.class) {
+                if (_instance == null) {
+                    _instance = new SubscriptionRegistry();
+                }
+            }
+        }
+        return _instance;
+    }
+
+    /**
+     * Parks the given response until the show described by subInfo is at least subInfo.percentageBooked percent full,
+     * or until the subscription expires.
+     *
+     * @param userId  the id of the subscribing user
+     * @param subInfo the show and threshold to wait for
+     * @param sub     the response to resume
+     * @return whether the subscription was added. If it wasn't, the caller is responsible for resuming the response.
+     */
+    public AddResult add(long userId, ConcertInfoSubscriptionDTO subInfo, AsyncResponse sub) {
+        AddResult result = reserve(userId);
+        if (result != AddResult.ADDED) {
+            rejected.increment();
+            return result;
+        }
+
+        ShowKey key = new ShowKey(subInfo.getConcertId(), subInfo.getDate());
+        Subscription subscription = new Subscription(userId, subInfo.getPercentageBooked(), sub);
+
+        // Clean up after ourselves whenever the response finishes, however that happens.
+        sub.register((CompletionCallback) throwable -> remove(key, subscription));
+        sub.register((ConnectionCallback) response -> {
+            if (remove(key, subscription)) {
+                disconnected.increment();
+            }
+            response.cancel();
+        });
+
+        sub.setTimeoutHandler(response -> {
+            if (remove(key, subscription)) {
+                expired.increment();
+            }
+            response.resume(Response.noContent().build());
+        });
+        sub.setTimeout(getTtlSeconds(subInfo), TimeUnit.SECONDS);
+
+        shows.computeIfAbsent(key, k -> new ShowSubscriptions()).add(subscription);
+        return AddResult.ADDED;
+    }
+
+    /**
+     * Returns how long the given subscription should wait. Subscribers can ask for a shorter wait than the configured
+     * TTL, but not a longer one.
+     */
+    private static long getTtlSeconds(ConcertInfoSubscriptionDTO subInfo) {
+        Integer requested = subInfo.getTtlSeconds();
+        if (requested == null || requested <= 0) {
+            return Config.SUBSCRIPTION_TTL_SECONDS;
+        }
+        return Math.min(requested, Config.SUBSCRIPTION_TTL_SECONDS);
+    }
+
+    /**
+     * Returns true if anyone is subscribed to the given show.
+     */
+    public boolean hasSubscribers(long concertId, LocalDateTime date) {
+        ShowSubscriptions subs = shows.get(new ShowKey(concertId, date));
+        return subs != null && !subs.isEmpty();
+    }
+
+    /**
+     * Removes and returns all still-waiting subscribers for the given show whose threshold is at or below the given
+     * percentage. The caller is responsible for resuming them.
+     */
+    public List<AsyncResponse> takeCrossed(long concertId, LocalDateTime date, int percentageBooked) {
+        List<AsyncResponse> crossed = new ArrayList<>();
+
+        ShowSubscriptions subs = shows.get(new ShowKey(concertId, date));
+        if (subs == null) {
+            return crossed;
+        }
+
+        for (Subscription subscription : subs.takeUpTo(percentageBooked)) {
+            release(subscription.userId);
+            if (!subscription.response.isDone()) {
+                crossed.add(subscription.response);
+            }
+        }
+        return crossed;
+    }
+
+    /**
+     * Removes all parked subscriptions, cancelling their responses (so that clients get a 503 Service Unavailable).
+     */
+    public void clear() {
+        for (ShowSubscriptions subs : shows.values()) {
+            for (Subscription subscription : subs.takeUpTo(Integer.MAX_VALUE)) {
+                release(subscription.userId);
+                subscription.response.cancel();
+            }
+        }
+    }
+
+    /**
+     * Gets the total number of parked subscriptions, across all shows.
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Gets the number of subscriptions that have expired without being notified.
+     */
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    /**
+     * Gets the number of subscriptions whose clients disconnected before being notified.
+     */
+    public long getDisconnected() {
+        return disconnected.sum();
+    }
+
+    /**
+     * Gets the number of subscriptions turned away because a limit had been reached.
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Removes the given subscription, returning true if it was still waiting (i.e. this call removed it).
+     */
+    private boolean remove(ShowKey key, Subscription subscription) {
+        ShowSubscriptions subs = shows.get(key);
+        if (subs != null && subs.remove(subscription)) {
+            release(subscription.userId);
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized AddResult reserve(long userId) {
+        if (count >= Config.SUBSCRIPTION_MAX_TOTAL) {
+            return AddResult.LIMIT_REACHED;
+        }
+        int userCount = countsByUser.getOrDefault(userId, 0);
+        if (userCount >= Config.SUBSCRIPTION_MAX_PER_USER) {
+            return AddResult.USER_LIMIT_REACHED;
+        }
+
+        countsByUser.put(userId, userCount + 1);
+        count++;
+        return AddResult.ADDED;
+    }
+
+    private synchronized void release(long userId) {
+        countsByUser.computeIfPresent(userId, (id, userCount) -> userCount == 1 ? null : userCount - 1);
+        count--;
+    }
+
+    private static class Subscription {
+        private final long userId;
+        private final int threshold;
+        private final AsyncResponse response;
+
+        Subscription(long userId, int threshold, AsyncResponse response) {
+            this.userId = userId;
+            this.threshold = threshold;
+            this.response = response;
+        }
+    }
+
+    /**
+     * The subscriptions for a single show, bucketed by threshold.
+     */
+    private static class ShowSubscriptions {
+
+        private final NavigableMap<Integer, Set<Subscription>> byThreshold = new TreeMap<>();
+        private int size = 0;
+
+        synchronized void add(Subscription subscription) {
+            if (byThreshold.computeIfAbsent(subscription.threshold, t -> new LinkedHashSet<>()).add(subscription)) {
+                size++;
+            }
+        }
+
+        synchronized boolean remove(Subscription subscription) {
+            Set<Subscription> bucket = byThreshold.get(subscription.threshold);
+            if (bucket != null && bucket.remove(subscription)) {
+                size--;
+                if (bucket.isEmpty()) {
+                    byThreshold.remove(subscription.threshold);
+                }
+                return true;
+            }
+            return false;
+        }
+
+        synchronized List<Subscription> takeUpTo(int percentageBooked) {
+            List<Subscription> taken = new ArrayList<>();
+
+            Iterator<Map.Entry<Integer, Set<Subscription>>> buckets =
+                    byThreshold.headMap(percentageBooked, true).entrySet().iterator();
+            while (buckets.hasNext()) {
+                Set<Subscription> bucket = buckets.next().getValue();
+                taken.addAll(bucket);
+                size -= bucket.size();
+                buckets.remove();
+            }
+
+            return taken;
+        }
+
+        synchronized boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
@@ -16,8 +16,13 @@ public class TestResource {
     @Path("/reset")
     public Response resetDatabase() {
 
+        SeatHolds.instance().clear();
+        SubscriptionRegistry.instance().clear();
         PersistenceManager.instance().reset();
         ConcertUtils.initConcerts();
+        SeatInventory.instance().rebuild();
+        CatalogueCache.instance().invalidate();
+        AuthTokenCache.instance().clear();
 
         return Response.noContent().build();
     }
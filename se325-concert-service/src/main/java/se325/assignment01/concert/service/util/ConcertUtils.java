@@ -1,5 +1,6 @@
 package se325.assignment01.concert.service.util;
 
+import org.hibernate.jpa.QueryHints;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import se325.assignment01.concert.service.domain.Concert;
@@ -18,20 +19,29 @@ public class ConcertUtils {
 
     private static Logger LOGGER = LoggerFactory.getLogger(ConcertUtils.class);
 
+    private static volatile long lastInitDurationMillis = -1;
+    private static volatile int lastInitSeatCount = 0;
+
     /**
      * This method will clear all seat and booking data from the database. Then, it will create all Seat objects for
      * all concerts and dates.
+     * <p>
+     * All seats are inserted in a single transaction. Seat ids come from a pooled sequence and inserts are sent in JDBC
+     * batches (see hibernate.jdbc.batch_size in persistence.xml), with the persistence context flushed and cleared after
+     * each date so it never holds more than one theatre's worth of seats.
      * TODO Refactor so it's not so obvious that seats have to be entities.
      */
     public static void initConcerts() {
         LOGGER.debug("initConcerts(): Creating the Application");
+        long startTime = System.nanoTime();
 
         EntityManager em = PersistenceManager.instance().createEntityManager();
         try {
 
             // Get all concerts
             em.getTransaction().begin();
-            TypedQuery<Concert> query = em.createQuery("select c from Concert c", Concert.class);
+            TypedQuery<Concert> query = em.createNamedQuery("Concert.findAllWithDetails", Concert.class)
+                    .setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false);
             List<Concert> concerts = query.getResultList();
 
             // Get all dates for all concerts
@@ -40,7 +50,7 @@ public class ConcertUtils {
                 Set<LocalDateTime> dates = c.getDates();
                 allDates.addAll(dates);
             }
-            em.getTransaction().commit();
+            em.clear();
 
             LOGGER.debug("initConcerts(): There are " + allDates.size() + " concert dates");
 
@@ -48,21 +58,38 @@ public class ConcertUtils {
             int seatCount = 0;
             for (LocalDateTime date : allDates) {
 
-                em.getTransaction().begin();
                 Set<Seat> seatsForDate = TheatreLayout.createSeatsFor(date);
                 for (Seat s : seatsForDate) {
                     em.persist(s);
                     seatCount++;
                 }
-                em.getTransaction().commit();
 
-                // Ensures we aren't braking the EM with thousands of seat entities.
+                // Sends this date's inserts as a batch, and ensures we aren't braking the EM with thousands of seat entities.
+                em.flush();
                 em.clear();
             }
+            em.getTransaction().commit();
 
-            LOGGER.debug("initConcerts(): Created " + seatCount + " seats!");
+            lastInitDurationMillis = (System.nanoTime() - startTime) / 1_000_000;
+            lastInitSeatCount = seatCount;
+            LOGGER.info("initConcerts(): Created " + seatCount + " seats for " + allDates.size() + " dates in " +
+                    lastInitDurationMillis + "ms");
         } finally {
             em.close();
         }
     }
+
+    /**
+     * Gets how long the most recent call to {@link #initConcerts()} took, in milliseconds, or -1 if it hasn't finished.
+     */
+    public static long getLastInitDurationMillis() {
+        return lastInitDurationMillis;
+    }
+
+    /**
+     * Gets the number of seats created by the most recent call to {@link #initConcerts()}.
+     */
+    public static int getLastInitSeatCount() {
+        return lastInitSeatCount;
+    }
 }
@@ -62,6 +62,71 @@ public class TheatreLayout {
 
     }
 
+    /**
+     * Gets the zero-based row index of the given seat label (e.g. "C7" is in row 2).
+     *
+     * @param label the seat label
+     * @return the row index, or -1 if the label doesn't name a seat in the theatre
+     */
+    public static int rowIndexOf(String label) {
+        if (seatIndexOf(label) < 0) {
+            return -1;
+        }
+        return label.charAt(0) - 'A';
+    }
+
+    /**
+     * Gets the zero-based index of the given seat label within its row (e.g. "C7" is seat 6 in its row).
+     *
+     * @param label the seat label
+     * @return the seat index within the row, or -1 if the label doesn't name a seat in the theatre
+     */
+    public static int seatIndexOf(String label) {
+        if (label == null || label.length() < 2) {
+            return -1;
+        }
+
+        int rowNum = label.charAt(0) - 'A';
+        if (rowNum < 0 || rowNum >= NUM_ROWS) {
+            return -1;
+        }
+
+        int seatNum;
+        try {
+            seatNum = Integer.parseInt(label.substring(1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+
+        if (seatNum < 1 || seatNum > NUM_SEATS_PER_ROW || !label.equals("" + label.charAt(0) + seatNum)) {
+            return -1;
+        }
+        return seatNum - 1;
+    }
+
+    /**
+     * Gets the label of the seat at the given zero-based row and seat indexes. The inverse of {@link #rowIndexOf(String)}
+     * and {@link #seatIndexOf(String)}.
+     */
+    public static String labelFor(int rowIndex, int seatIndex) {
+        return "" + (char) ('A' + rowIndex) + (seatIndex + 1);
+    }
+
+    /**
+     * Gets the zero-based indexes of the first and last rows in the price band with the given name, or null if there's
+     * no such band. Bands run from the front row backwards, in the order of {@link #PRICE_BANDS}.
+     */
+    public static int[] rowsOf(String priceBandName) {
+        int firstRow = 0;
+        for (PriceBand band : PRICE_BANDS) {
+            if (band.name.equals(priceBandName)) {
+                return new int[]{firstRow, firstRow + band.numRows - 1};
+            }
+            firstRow += band.numRows;
+        }
+        return null;
+    }
+
     public static class PriceBand {
         public String name;
         public BigDecimal price;
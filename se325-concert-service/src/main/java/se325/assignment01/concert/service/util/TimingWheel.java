@@ -0,0 +1,139 @@
+package se325.assignment01.concert.service.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hashed timing wheel, for keeping track of large numbers of items that each expire at some point in the future.
+ * <p>
+ * Time is divided into ticks, and each item is placed in the bucket for the tick in which it expires, along with the
+ * number of full turns of the wheel left before that tick comes round. Scheduling and cancelling are O(1), and
+ * {@link #advance(long)} only looks at the buckets for ticks that have passed, rather than at every item.
+ * <p>
+ * Items are identified by a long id, which must be unique among the items currently scheduled. Expiry is accurate to
+ * within one tick. All methods are thread-safe.
+ *
+ * @param <T> the type of item being scheduled
+ */
+public class TimingWheel<T> {
+
+    private final long tickNanos;
+    private final List<Set<Slot<T>>> buckets;
+    private final Map<Long, Slot<T>> slotsById = new HashMap<>();
+    private final long startNanos;
+
+    // The last tick that advance() has processed.
+    private long currentTick = 0;
+
+    /**
+     * Creates a new wheel.
+     *
+     * @param tickDuration the length of a tick
+     * @param unit         the units of tickDuration
+     * @param wheelSize    the number of buckets in the wheel
+     */
+    public TimingWheel(long tickDuration, TimeUnit unit, int wheelSize) {
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.buckets = new ArrayList<>(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new LinkedHashSet<>());
+        }
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Schedules the given item to expire at the given time. Any item already scheduled with the same id is replaced.
+     *
+     * @param id       the item's id
+     * @param item     the item
+     * @param deadline the time at which the item expires, in terms of {@link System#nanoTime()}
+     */
+    public synchronized void schedule(long id, T item, long deadline) {
+        cancel(id);
+
+        // Items that are already due go in the next tick to be processed.
+        long tick = Math.max(currentTick + 1, (deadline - startNanos + tickNanos - 1) / tickNanos);
+
+        Slot<T> slot = new Slot<>(id, item, (tick - currentTick - 1) / buckets.size());
+        slot.bucket = buckets.get((int) (tick % buckets.size()));
+        slot.bucket.add(slot);
+        slotsById.put(id, slot);
+    }
+
+    /**
+     * Removes the item with the given id from the wheel, if it hasn't already expired.
+     *
+     * @return the item, or null if no item with that id is scheduled
+     */
+    public synchronized T cancel(long id) {
+        Slot<T> slot = slotsById.remove(id);
+        if (slot == null) {
+            return null;
+        }
+        slot.bucket.remove(slot);
+        return slot.item;
+    }
+
+    /**
+     * Moves the wheel forward to the given time, removing and returning every item that has expired along the way.
+     *
+     * @param now the current time, in terms of {@link System#nanoTime()}
+     * @return the expired items
+     */
+    public synchronized List<T> advance(long now) {
+        List<T> expired = new ArrayList<>();
+
+        long targetTick = (now - startNanos) / tickNanos;
+        while (currentTick < targetTick) {
+            currentTick++;
+
+            Iterator<Slot<T>> slots = buckets.get((int) (currentTick % buckets.size())).iterator();
+            while (slots.hasNext()) {
+                Slot<T> slot = slots.next();
+                if (slot.remainingRounds > 0) {
+                    slot.remainingRounds--;
+                } else {
+                    slots.remove();
+                    slotsById.remove(slot.id);
+                    expired.add(slot.item);
+                }
+            }
+        }
+
+        return expired;
+    }
+
+    /**
+     * Removes all items from the wheel.
+     */
+    public synchronized void clear() {
+        buckets.forEach(Set::clear);
+        slotsById.clear();
+    }
+
+    /**
+     * Gets the number of items currently scheduled.
+     */
+    public synchronized int size() {
+        return slotsById.size();
+    }
+
+    private static class Slot<T> {
+        private final long id;
+        private final T item;
+        private long remainingRounds;
+        private Set<Slot<T>> bucket;
+
+        Slot(long id, T item, long remainingRounds) {
+            this.id = id;
+            this.item = item;
+            this.remainingRounds = remainingRounds;
+        }
+    }
+}
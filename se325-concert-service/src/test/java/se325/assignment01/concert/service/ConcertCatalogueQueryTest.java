@@ -0,0 +1,114 @@
+package se325.assignment01.concert.service;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.stat.Statistics;
+import org.junit.*;
+import se325.assignment01.concert.common.dto.ConcertDTO;
+import se325.assignment01.concert.service.domain.Concert;
+import se325.assignment01.concert.service.mapper.ConcertMapper;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Makes sure that loading and mapping the whole concert catalogue costs a fixed number of SQL statements, no matter how
+ * many concerts there are. Runs against its own in-memory H2 database rather than the deployed service.
+ */
+public class ConcertCatalogueQueryTest {
+
+    private static EntityManagerFactory emf;
+    private static Statistics statistics;
+
+    @BeforeClass
+    public static void setUpClass() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:catalogue-query-test;DB_CLOSE_DELAY=-1");
+        properties.put("hibernate.generate_statistics", "true");
+
+        emf = Persistence.createEntityManagerFactory("se325.assignment01.concert", properties);
+        statistics = emf.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        emf.close();
+    }
+
+    /**
+     * Tests that the catalogue takes a single statement to load with the concerts from db-init.sql, and still takes a
+     * single statement once many more concerts (each with their own dates and performers) have been added.
+     */
+    @Test
+    public void testCatalogueQueryStatementCountIsConstant() {
+        List<ConcertDTO> concerts = loadCatalogue();
+        assertEquals(8, concerts.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        addConcerts(50);
+
+        concerts = loadCatalogue();
+        assertEquals(58, concerts.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        for (ConcertDTO concert : concerts) {
+            assertFalse(concert.getDates().isEmpty());
+            assertFalse(concert.getPerformers().isEmpty());
+        }
+    }
+
+    /**
+     * Loads and maps the whole catalogue, in the same way as CatalogueCache. Statistics are cleared first, so
+     * afterwards they only describe this load.
+     */
+    private static List<ConcertDTO> loadCatalogue() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            statistics.clear();
+
+            List<ConcertDTO> concerts = em.createNamedQuery("Concert.findAllWithDetails", Concert.class)
+                    .setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false)
+                    .getResultList()
+                    .stream().map(ConcertMapper::toDTO).collect(Collectors.toList());
+
+            em.getTransaction().commit();
+            return concerts;
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Adds the given number of concerts, each with two dates and two performers.
+     */
+    private static void addConcerts(int numConcerts) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            for (int i = 0; i < numConcerts; i++) {
+                long id = 100 + i;
+                em.createNativeQuery("INSERT INTO CONCERTS (ID, TITLE, IMAGE_NAME, BLURB) VALUES (?, ?, 'concerts/test.jpg', 'Test')")
+                        .setParameter(1, id).setParameter(2, "Test Concert " + id).executeUpdate();
+                em.createNativeQuery("INSERT INTO CONCERT_DATES (CONCERT_ID, DATE) VALUES (?, DATEADD('DAY', ?, TIMESTAMP '2030-01-01 20:00:00'))")
+                        .setParameter(1, id).setParameter(2, 2 * i).executeUpdate();
+                em.createNativeQuery("INSERT INTO CONCERT_DATES (CONCERT_ID, DATE) VALUES (?, DATEADD('DAY', ?, TIMESTAMP '2030-01-01 20:00:00'))")
+                        .setParameter(1, id).setParameter(2, 2 * i + 1).executeUpdate();
+                em.createNativeQuery("INSERT INTO CONCERT_PERFORMER (CONCERT_ID, PERFORMER_ID) VALUES (?, ?)")
+                        .setParameter(1, id).setParameter(2, 1 + i % 11).executeUpdate();
+                em.createNativeQuery("INSERT INTO CONCERT_PERFORMER (CONCERT_ID, PERFORMER_ID) VALUES (?, ?)")
+                        .setParameter(1, id).setParameter(2, 1 + (i + 1) % 11).executeUpdate();
+            }
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+}
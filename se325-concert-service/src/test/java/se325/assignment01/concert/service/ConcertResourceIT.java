@@ -1,5 +1,7 @@
 package se325.assignment01.concert.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.*;
 import se325.assignment01.concert.common.dto.*;
 import se325.assignment01.concert.common.jackson.LocalDateTimeDeserializer;
@@ -9,15 +11,26 @@ import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.Cookie;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.Link;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.sse.InboundSseEvent;
+import javax.ws.rs.sse.SseEventSource;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
@@ -144,6 +157,38 @@ public class ConcertResourceIT {
 
     }
 
+    /**
+     * Tests that concerts can be fetched a page at a time, in id order, by following each page's next link, and that
+     * the last page has no next link.
+     */
+    @Test
+    public void testGetConcertsPaged() {
+        List<Long> ids = new ArrayList<>();
+        int numPages = 0;
+
+        String uri = WEB_SERVICE_URI + "/concerts?limit=3";
+        while (uri != null) {
+            Response response = client.target(uri).request().get();
+            assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+
+            List<ConcertDTO> page = response.readEntity(new GenericType<List<ConcertDTO>>() {
+            });
+            assertTrue(page.size() <= 3);
+            page.forEach(concert -> ids.add(concert.getId()));
+            numPages++;
+
+            uri = response.getLink("next") == null ? null : response.getLink("next").getUri().toString();
+            response.close();
+        }
+
+        assertEquals(3, numPages);
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L), ids);
+
+        Response response = client.target(WEB_SERVICE_URI + "/concerts?limit=0").request().get();
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+        response.close();
+    }
+
     /**
      * Tests that all concert summaries are returned when requested. Concert summaries contain only the id, title, and
      * image name for each concert.
@@ -439,6 +484,70 @@ public class ConcertResourceIT {
         }
     }
 
+    /**
+     * Tests that all of a user's bookings, along with their seats, are returned when there are more of them than the
+     * service streams in one batch (see pom.xml), so that some seats are only loaded after earlier batches have been
+     * cleared from the EntityManager.
+     */
+    @Test
+    public void testGetAllBookingsForUserStreamedInBatches() {
+        login(client, "testuser", "pa55word").close();
+
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+        List<String> bookedLabels = new ArrayList<>();
+        for (int num = 1; num <= 12; num++) {
+            String label = "B" + num;
+            Response response = attemptBooking(client, 1, date, label);
+            assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+            response.close();
+            bookedLabels.add(label);
+        }
+
+        List<BookingDTO> bookings = client.target(WEB_SERVICE_URI + "/bookings")
+                .request().get(new GenericType<List<BookingDTO>>() {
+                });
+
+        assertEquals(12, bookings.size());
+        List<String> labels = new ArrayList<>();
+        for (BookingDTO booking : bookings) {
+            assertEquals(1, booking.getSeats().size());
+            labels.add(booking.getSeats().get(0).getLabel());
+        }
+        assertEquals(new HashSet<>(bookedLabels), new HashSet<>(labels));
+    }
+
+    /**
+     * Tests that a user's bookings can be fetched a page at a time, in id order, continuing after the last booking of
+     * the previous page.
+     */
+    @Test
+    public void testGetBookingsForUserPaged() {
+        login(client, "testuser", "pa55word").close();
+
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+        for (String label : new String[]{"A1", "A2", "A3"}) {
+            attemptBooking(client, 1, date, label).close();
+        }
+
+        Response response = client.target(WEB_SERVICE_URI + "/bookings?limit=2").request().get();
+        List<BookingDTO> firstPage = response.readEntity(new GenericType<List<BookingDTO>>() {
+        });
+        assertEquals(2, firstPage.size());
+        assertEquals("A1", firstPage.get(0).getSeats().get(0).getLabel());
+        assertEquals("A2", firstPage.get(1).getSeats().get(0).getLabel());
+        Link next = response.getLink("next");
+        assertNotNull(next);
+        response.close();
+
+        response = client.target(next).request().get();
+        List<BookingDTO> secondPage = response.readEntity(new GenericType<List<BookingDTO>>() {
+        });
+        assertEquals(1, secondPage.size());
+        assertEquals("A3", secondPage.get(0).getSeats().get(0).getLabel());
+        assertNull(response.getLink("next"));
+        response.close();
+    }
+
     /**
      * Tests that a 401 error is returned when trying to access any booking information while not authenticated.
      */
@@ -448,6 +557,35 @@ public class ConcertResourceIT {
         assertEquals(Response.Status.UNAUTHORIZED.getStatusCode(), response.getStatus());
     }
 
+    /**
+     * Tests that when a user logs in again, their previous auth token stops working and the new one works.
+     */
+    @Test
+    public void testPreviousTokenRejectedAfterLoggingInAgain() {
+        login(client, "testuser", "pa55word").close();
+
+        // Use the first token, so the service has seen it.
+        Response response = client.target(WEB_SERVICE_URI + "/bookings").request().get();
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        response.close();
+
+        // Log in again as the same user from somewhere else.
+        Client otherClient = ClientBuilder.newClient();
+        try {
+            login(otherClient, "testuser", "pa55word").close();
+
+            response = client.target(WEB_SERVICE_URI + "/bookings").request().get();
+            assertEquals(Response.Status.UNAUTHORIZED.getStatusCode(), response.getStatus());
+            response.close();
+
+            response = otherClient.target(WEB_SERVICE_URI + "/bookings").request().get();
+            assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+            response.close();
+        } finally {
+            otherClient.close();
+        }
+    }
+
     /**
      * Tests that a 400 error is returned when trying to book seats for a date on which a given concert is not scheduled.
      */
@@ -661,6 +799,371 @@ public class ConcertResourceIT {
         }
     }
 
+    /**
+     * Tests that all seats for a date are streamed as a single, well-formed JSON array, with one element per seat. The
+     * service streams in batches smaller than the number of seats (see pom.xml), so this spans several of them.
+     */
+    @Test
+    public void testGetSeatsStreamedAsJsonArray() throws IOException {
+        Response response = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00").request().get();
+        try {
+            assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+
+            JsonNode seats = new ObjectMapper().readTree(response.readEntity(String.class));
+            assertTrue(seats.isArray());
+            assertEquals(120, seats.size());
+
+            Set<String> labels = new HashSet<>();
+            seats.forEach(seat -> labels.add(seat.get("label").asText()));
+            assertEquals(120, labels.size());
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Tests that the stream of booked seats for a date is a well-formed JSON array holding just the seats that have
+     * been booked.
+     */
+    @Test
+    public void testGetBookedSeatsStreamedAsJsonArray() throws IOException {
+        login(client, "testuser", "pa55word").close();
+        attemptBooking(client, 1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), "A1", "E5", "J12").close();
+
+        Response response = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00?status=Booked")
+                .request().get();
+        try {
+            assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+
+            JsonNode seats = new ObjectMapper().readTree(response.readEntity(String.class));
+            assertTrue(seats.isArray());
+
+            Set<String> labels = new HashSet<>();
+            seats.forEach(seat -> labels.add(seat.get("label").asText()));
+            assertEquals(new HashSet<>(Arrays.asList("A1", "E5", "J12")), labels);
+        } finally {
+            response.close();
+        }
+    }
+
+    /**
+     * Tests that the compact seat map for a date marks the same seats as booked as /seats/{date}, and includes the
+     * price bands for the theatre.
+     */
+    @Test
+    public void testGetSeatMap() {
+        // Log in
+        login(client, "testuser", "pa55word").close();
+
+        // Book some seats, including the last one in the theatre
+        attemptBooking(client, 1,
+                LocalDateTime.of(2020, 2, 15, 20, 0, 0),
+                "A1", "C5", "C6", "J12").close();
+
+        SeatMapDTO seatMap = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00/map")
+                .request().get(SeatMapDTO.class);
+
+        assertEquals(LocalDateTime.of(2020, 2, 15, 20, 0, 0), seatMap.getDate());
+        assertEquals(10, seatMap.getNumRows());
+        assertEquals(12, seatMap.getNumSeatsPerRow());
+        assertEquals(Arrays.asList("A1", "C5", "C6", "J12"), seatMap.getBookedLabels());
+
+        assertEquals(3, seatMap.getPriceBands().size());
+        assertEquals("Platinum Seating", seatMap.getPriceBands().get(0).getName());
+        assertEquals(150, seatMap.getPriceBands().get(0).getPrice().intValue());
+        assertEquals(10, seatMap.getPriceBands().stream().mapToInt(PriceBandDTO::getNumRows).sum());
+    }
+
+    /**
+     * Tests that a 404 error is returned when getting the seat map for a date with no concert.
+     */
+    @Test
+    public void testGetSeatMapForNonexistentDate() {
+        Response response = client.target(WEB_SERVICE_URI + "/seats/2019-09-08T20:00:00/map").request().get();
+
+        assertEquals(Response.Status.NOT_FOUND.getStatusCode(), response.getStatus());
+        response.close();
+    }
+
+    /**
+     * Tests that held seats can't be booked by anyone else, and that a hold only shows up in the user's bookings once
+     * it's been confirmed.
+     */
+    @Test
+    public void testHoldAndConfirmBooking() {
+        login(client, "testuser", "pa55word").close();
+
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+        BookingRequestDTO bReq = new BookingRequestDTO(1, date, Arrays.asList("A1", "A2"));
+        Response holdResponse = client.target(WEB_SERVICE_URI + "/bookings/holds").request().post(Entity.json(bReq));
+        assertEquals(Response.Status.CREATED.getStatusCode(), holdResponse.getStatus());
+        holdResponse.close();
+
+        Client user2Client = ClientBuilder.newClient();
+        try {
+            // Someone else can't book the held seats.
+            login(user2Client, "testuser2", "pa55word").close();
+            Response response = attemptBooking(user2Client, 1, date, "A2", "A3");
+            assertEquals(Response.Status.FORBIDDEN.getStatusCode(), response.getStatus());
+            response.close();
+
+            // Someone else can't confirm our hold either.
+            response = user2Client.target(holdResponse.getLocation() + "/confirm").request().post(null);
+            assertEquals(Response.Status.FORBIDDEN.getStatusCode(), response.getStatus());
+            response.close();
+        } finally {
+            user2Client.close();
+        }
+
+        // Not confirmed yet, so not in our bookings.
+        List<BookingDTO> bookings = client.target(WEB_SERVICE_URI + "/bookings")
+                .request().get(new GenericType<List<BookingDTO>>() {
+                });
+        assertEquals(0, bookings.size());
+
+        Response response = client.target(holdResponse.getLocation() + "/confirm").request().post(null);
+        assertEquals(Response.Status.NO_CONTENT.getStatusCode(), response.getStatus());
+        response.close();
+
+        bookings = client.target(WEB_SERVICE_URI + "/bookings")
+                .request().get(new GenericType<List<BookingDTO>>() {
+                });
+        assertEquals(1, bookings.size());
+        assertEquals(2, bookings.get(0).getSeats().size());
+    }
+
+    /**
+     * Tests that best-available bookings get the most central free block of seats in the front-most row that has one,
+     * within the requested price band.
+     */
+    @Test
+    public void testBookBestAvailable() {
+        login(client, "testuser", "pa55word").close();
+
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+        attemptBooking(client, 1, date, "A6").close();
+
+        // A6 is taken, so the nearest block of four to the middle of row A is A7 - A10.
+        Response response = attemptBestAvailable(client, new BestAvailableRequestDTO(1, date, 4));
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+        assertEquals(Arrays.asList("A7", "A8", "A9", "A10"), getBookedLabels(response));
+        response.close();
+
+        // A whole row of gold seating starts at row F.
+        response = attemptBestAvailable(client, new BestAvailableRequestDTO(1, date, 12, "Gold Seating"));
+        assertEquals(Response.Status.CREATED.getStatusCode(), response.getStatus());
+        List<String> labels = getBookedLabels(response);
+        response.close();
+        assertEquals(12, labels.size());
+        assertTrue(labels.stream().allMatch(label -> label.startsWith("F")));
+    }
+
+    /**
+     * Tests that a 403 error is returned when no row in the requested price band has enough free seats together, and
+     * that a 400 error is returned for impossible requests.
+     */
+    @Test
+    public void testAttemptBookBestAvailable() {
+        login(client, "testuser", "pa55word").close();
+
+        LocalDateTime date = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+        attemptBooking(client, 1, date, "I6", "J6").close();
+
+        Response response = attemptBestAvailable(client, new BestAvailableRequestDTO(1, date, 12, "Silver Seating"));
+        assertEquals(Response.Status.FORBIDDEN.getStatusCode(), response.getStatus());
+        response.close();
+
+        response = attemptBestAvailable(client, new BestAvailableRequestDTO(1, date, 2, "Bronze Seating"));
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+        response.close();
+
+        response = attemptBestAvailable(client, new BestAvailableRequestDTO(1, date, 13));
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+        response.close();
+
+        response = attemptBestAvailable(client, new BestAvailableRequestDTO(2, date, 2));
+        assertEquals(Response.Status.BAD_REQUEST.getStatusCode(), response.getStatus());
+        response.close();
+
+        // Nothing was booked by any of those.
+        List<SeatDTO> bookedSeats = client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00?status=Booked")
+                .request().get(new GenericType<List<SeatDTO>>() {
+                });
+        assertEquals(2, bookedSeats.size());
+    }
+
+    private static Response attemptBestAvailable(Client client, BestAvailableRequestDTO request) {
+        return client.target(WEB_SERVICE_URI + "/bookings/best-available").request().post(Entity.json(request));
+    }
+
+    private List<String> getBookedLabels(Response bookingResponse) {
+        BookingDTO booking = client.target(bookingResponse.getLocation()).request().get(BookingDTO.class);
+        return booking.getSeats().stream()
+                .sorted(Comparator.comparing((SeatDTO seat) -> seat.getLabel().length()).thenComparing(SeatDTO::getLabel))
+                .map(SeatDTO::getLabel)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Tests that catalogue responses carry an ETag, and that a 304 is returned when the client already has the current
+     * version.
+     */
+    @Test
+    public void testGetConcertsNotModified() {
+        Response response = client.target(WEB_SERVICE_URI + "/concerts").request().get();
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        EntityTag tag = response.getEntityTag();
+        response.close();
+        assertNotNull(tag);
+
+        response = client.target(WEB_SERVICE_URI + "/concerts").request().header("If-None-Match", tag.toString()).get();
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), response.getStatus());
+        response.close();
+
+        response = client.target(WEB_SERVICE_URI + "/performers/1").request().header("If-None-Match", tag.toString()).get();
+        assertEquals(Response.Status.NOT_MODIFIED.getStatusCode(), response.getStatus());
+        response.close();
+    }
+
+    /**
+     * Tests that the availability of each date of a concert reflects the bookings made for that concert and date only.
+     */
+    @Test
+    public void testGetConcertAvailability() {
+        // Log in
+        login(client, "testuser", "pa55word").close();
+
+        // Book three rows for one of the dates
+        attemptBooking(client, 4, LocalDateTime.of(2019, 9, 6, 20, 0, 0), 'A', 'C').close();
+
+        List<AvailabilityDTO> availability = client.target(WEB_SERVICE_URI + "/concerts/4/availability")
+                .request().get(new GenericType<List<AvailabilityDTO>>() {
+                });
+
+        assertEquals(2, availability.size());
+        availability.sort(Comparator.comparing(AvailabilityDTO::getDate));
+
+        assertEquals(LocalDateTime.of(2019, 9, 6, 20, 0, 0), availability.get(0).getDate());
+        assertEquals(36, availability.get(0).getNumSeatsBooked());
+        assertEquals(84, availability.get(0).getNumSeatsRemaining());
+
+        assertEquals(LocalDateTime.of(2019, 9, 7, 20, 0, 0), availability.get(1).getDate());
+        assertEquals(0, availability.get(1).getNumSeatsBooked());
+        assertEquals(120, availability.get(1).getNumSeatsRemaining());
+    }
+
+    /**
+     * Tests that once a concert has been loaded, making further bookings for it is served from the second-level cache
+     * rather than the database.
+     */
+    @Test
+    public void testConcertsServedFromSecondLevelCache() {
+        login(client, "testuser", "pa55word").close();
+        LocalDateTime date = LocalDateTime.of(2019, 9, 6, 20, 0, 0);
+
+        attemptBooking(client, 4, date, "A1").close();
+        long hitsBefore = getConcertCacheHits();
+
+        attemptBooking(client, 4, date, "A2").close();
+        attemptBooking(client, 4, date, "A3").close();
+
+        assertTrue(getConcertCacheHits() >= hitsBefore + 2);
+    }
+
+    @SuppressWarnings("unchecked")
+    private long getConcertCacheHits() {
+        Map<String, Object> stats = client.target(WEB_SERVICE_URI + "-admin/cache/second-level")
+                .request().get(new GenericType<Map<String, Object>>() {
+                });
+        Map<String, Object> regions = (Map<String, Object>) stats.get("regions");
+        Map<String, Object> concerts = (Map<String, Object>) regions.get("se325.assignment01.concert.service.domain.Concert");
+        return ((Number) concerts.get("hits")).longValue();
+    }
+
+    /**
+     * Tests that the service reports itself as ready once it has started.
+     */
+    @Test
+    public void testServiceReady() {
+        Response response = client.target(WEB_SERVICE_URI + "-admin/ready").request().get();
+
+        assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+        assertEquals(Boolean.TRUE, response.readEntity(new GenericType<Map<String, Object>>() {
+        }).get("ready"));
+        response.close();
+    }
+
+    /**
+     * Tests that requests are counted against their endpoint's path template and status code, and that latency
+     * summaries are reported for the endpoint, EntityManagers and DTO mapping.
+     */
+    @Test
+    public void testMetrics() {
+        client.target(WEB_SERVICE_URI + "/concerts/1").request().get().close();
+        client.target(WEB_SERVICE_URI + "/concerts/12").request().get().close();
+        client.target(WEB_SERVICE_URI + "/seats/2020-02-15T20:00:00?status=Booked").request().get().close();
+
+        String metrics = client.target("http://localhost:10000/services/metrics").request().get(String.class);
+
+        assertTrue(metrics.contains("concert_responses_total{endpoint=\"GET /concert-service/concerts/{id}\",status=\"200\"}"));
+        assertTrue(metrics.contains("concert_responses_total{endpoint=\"GET /concert-service/concerts/{id}\",status=\"404\"}"));
+        assertTrue(metrics.contains("concert_request_duration_seconds{endpoint=\"GET /concert-service/seats/{date}\",quantile=\"0.99\"}"));
+        assertTrue(metrics.contains("concert_entity_manager_duration_seconds_count "));
+        assertTrue(metrics.contains("concert_dto_mapping_duration_seconds{quantile=\"0.5\"}"));
+    }
+
+    /**
+     * Tests that a seat event stream starts with a snapshot of the taken seats, and then receives a delta for each
+     * booking made for its concert and date - but not for other dates.
+     */
+    @Test
+    public void testSeatEvents() throws InterruptedException {
+        // Log in, and book some seats before the stream is opened
+        login(client, "testuser", "pa55word").close();
+        LocalDateTime date = LocalDateTime.of(2019, 9, 6, 20, 0, 0);
+        attemptBooking(client, 4, date, "A1", "A2").close();
+
+        BlockingQueue<InboundSseEvent> events = new LinkedBlockingQueue<>();
+        Client streamClient = ClientBuilder.newClient();
+        try (SseEventSource source = SseEventSource
+                .target(streamClient.target(WEB_SERVICE_URI + "/concerts/4/seats/2019-09-06T20:00:00/events"))
+                .build()) {
+
+            source.register(events::add);
+            source.open();
+
+            InboundSseEvent snapshot = events.poll(5, TimeUnit.SECONDS);
+            assertNotNull(snapshot);
+            assertEquals("snapshot", snapshot.getName());
+            assertEquals(Arrays.asList("A1", "A2"), snapshot.readData(SeatDeltaDTO.class, MediaType.APPLICATION_JSON_TYPE).getBooked());
+
+            // A booking for the other date shouldn't be sent, but the one for this date should.
+            attemptBooking(client, 4, LocalDateTime.of(2019, 9, 7, 20, 0, 0), "B1").close();
+            attemptBooking(client, 4, date, "C5", "C6").close();
+
+            InboundSseEvent delta = events.poll(5, TimeUnit.SECONDS);
+            assertNotNull(delta);
+            assertEquals("delta", delta.getName());
+            SeatDeltaDTO dtoDelta = delta.readData(SeatDeltaDTO.class, MediaType.APPLICATION_JSON_TYPE);
+            assertEquals(Arrays.asList("C5", "C6"), dtoDelta.getBooked());
+            assertTrue(dtoDelta.getReleased().isEmpty());
+        } finally {
+            streamClient.close();
+        }
+    }
+
+    /**
+     * Tests that a 404 error is returned when trying to open a seat event stream for a date the concert isn't on.
+     */
+    @Test
+    public void testSeatEventsForNonexistentDate() {
+        Response response = client.target(WEB_SERVICE_URI + "/concerts/4/seats/2019-09-08T20:00:00/events")
+                .request(MediaType.SERVER_SENT_EVENTS).get();
+
+        assertEquals(Response.Status.NOT_FOUND.getStatusCode(), response.getStatus());
+        response.close();
+    }
+
     // Tests for publish / subscribe functions - uncomment when ready.
     // --------------------------------------------------------------------
 
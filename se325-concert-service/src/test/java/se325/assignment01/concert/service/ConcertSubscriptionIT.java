@@ -16,6 +16,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -193,9 +194,87 @@ public class ConcertSubscriptionIT {
 
     }
 
+    /**
+     * Tests that a subscription which isn't notified within its TTL is answered with 204 No Content. The subscription
+     * asks for a TTL of 2 seconds, much shorter than the one the ITs run the service with (see pom.xml).
+     */
+    @Test
+    public void testSubscriptionExpires() throws ExecutionException, InterruptedException, TimeoutException {
+        login(client, "testuser", "pa55word").close();
+
+        ConcertInfoSubscriptionDTO subInfo =
+                new ConcertInfoSubscriptionDTO(1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), 50, 2);
+        Future<Response> future = client.target(WEB_SERVICE_URI + "/subscribe/concertInfo")
+                .request().async().post(Entity.json(subInfo));
+
+        Response response = future.get(10, TimeUnit.SECONDS);
+        assertEquals(Response.Status.NO_CONTENT.getStatusCode(), response.getStatus());
+        response.close();
+
+        Map<String, Object> stats = getSubscriptionStats();
+        assertEquals(0, ((Number) stats.get("parked")).intValue());
+        assertTrue(((Number) stats.get("expired")).longValue() >= 1);
+    }
+
+    /**
+     * Tests that a user can't have more than the allowed number of subscriptions waiting at once (5, in the ITs - see
+     * pom.xml). Further subscriptions get a 503 error with a Retry-After header, but other users aren't affected.
+     */
+    @Test
+    public void testSubscriptionLimitPerUser() throws ExecutionException, InterruptedException, TimeoutException {
+        login(client, "testuser", "pa55word").close();
+
+        ConcertInfoSubscriptionDTO subInfo = new ConcertInfoSubscriptionDTO(1, LocalDateTime.of(2020, 2, 15, 20, 0, 0), 50);
+        List<Future<Response>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(client.target(WEB_SERVICE_URI + "/subscribe/concertInfo")
+                    .request().async().post(Entity.json(subInfo)));
+        }
+
+        // Wait until all five are parked, so that the next one is definitely over the limit.
+        for (int i = 0; i < 20 && ((Number) getSubscriptionStats().get("parked")).intValue() < 5; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(5, ((Number) getSubscriptionStats().get("parked")).intValue());
+
+        Response response = client.target(WEB_SERVICE_URI + "/subscribe/concertInfo")
+                .request().async().post(Entity.json(subInfo)).get(1, TimeUnit.SECONDS);
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), response.getStatus());
+        assertNotNull(response.getHeaderString("Retry-After"));
+        response.close();
+
+        // Another user can still subscribe.
+        Client user2Client = ClientBuilder.newClient();
+        try {
+            login(user2Client, "testuser2", "pa55word").close();
+            Future<Response> user2Future = user2Client.target(WEB_SERVICE_URI + "/subscribe/concertInfo")
+                    .request().async().post(Entity.json(subInfo));
+            try {
+                user2Future.get(1, TimeUnit.SECONDS);
+                fail(); // Should still be waiting.
+            } catch (TimeoutException e) {
+                // Good!
+            }
+        } finally {
+            user2Client.close();
+        }
+
+        for (Future<Response> future : futures) {
+            assertFalse(future.isDone());
+        }
+    }
+
     // Helper methods
     // --------------------------------------------------------------------
 
+    /**
+     * Helper method to get the service's subscription statistics.
+     */
+    private Map<String, Object> getSubscriptionStats() {
+        return client.target(WEB_SERVICE_URI + "-admin/subscriptions").request().get(new GenericType<Map<String, Object>>() {
+        });
+    }
+
     /**
      * Helper method to log us in.
      */
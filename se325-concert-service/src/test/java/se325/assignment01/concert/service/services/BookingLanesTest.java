@@ -0,0 +1,107 @@
+package se325.assignment01.concert.service.services;
+
+import org.junit.*;
+import se325.assignment01.concert.service.domain.Booking;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the booking lanes, including that seats claimed for a booking are given back when a lane fails to make it. Runs
+ * against its own in-memory H2 database rather than the deployed service.
+ */
+public class BookingLanesTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+
+    private BookingLanes lanes;
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.setProperty("concert.db.url", "jdbc:h2:mem:booking-lanes-test;DB_CLOSE_DELAY=-1");
+    }
+
+    @Before
+    public void setUp() {
+        new TestResource().resetDatabase();
+
+        // Lanes whose every commit blows up, as if something unexpected went wrong while writing the bookings.
+        lanes = new BookingLanes() {
+            @Override
+            boolean commit(List<Request> requests) {
+                throw new IllegalStateException("Simulated lane failure");
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        lanes.shutdown();
+    }
+
+    /**
+     * Tests that working lanes book free seats, and turn away bookings for seats that are already taken. Lanes aren't
+     * the default booking strategy, so the ITs don't cover them.
+     */
+    @Test
+    public void testBookInLane() throws InterruptedException, ExecutionException {
+        BookingLanes workingLanes = new BookingLanes();
+        try {
+            BookingLanes.Outcome outcome = workingLanes.book(1, 1, DATE, Arrays.asList("C1", "C2"),
+                    Booking.Status.Confirmed).get();
+            assertEquals(BookingLanes.Result.BOOKED, outcome.getResult());
+            assertNotNull(outcome.getBookingId());
+
+            outcome = workingLanes.book(1, 1, DATE, Arrays.asList("C2", "C3"), Booking.Status.Confirmed).get();
+            assertEquals(BookingLanes.Result.CONFLICT, outcome.getResult());
+            assertNull(outcome.getBookingId());
+
+            // C3 wasn't booked, so it's still free.
+            assertEquals(SeatInventory.ClaimResult.CLAIMED,
+                    SeatInventory.instance().claim(1, DATE, Collections.singletonList("C3")));
+        } finally {
+            workingLanes.shutdown();
+        }
+    }
+
+    /**
+     * Tests that when a lane fails while booking seats it claimed itself, the caller gets the error and the seats can
+     * be claimed again.
+     */
+    @Test
+    public void testSeatsReleasedWhenLaneFails() throws InterruptedException, ExecutionException {
+        List<String> seatLabels = Arrays.asList("A1", "A2");
+
+        try {
+            lanes.book(1, 1, DATE, seatLabels, Booking.Status.Confirmed).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        assertEquals(SeatInventory.ClaimResult.CLAIMED, SeatInventory.instance().claim(1, DATE, seatLabels));
+    }
+
+    /**
+     * Tests that when a lane fails while booking seats the caller had already claimed, the seats can be claimed again.
+     */
+    @Test
+    public void testClaimedSeatsReleasedWhenLaneFails() throws InterruptedException, ExecutionException {
+        List<String> seatLabels = Arrays.asList("B1", "B2");
+        assertEquals(SeatInventory.ClaimResult.CLAIMED, SeatInventory.instance().claim(1, DATE, seatLabels));
+
+        try {
+            lanes.bookClaimed(1, 1, DATE, seatLabels, Booking.Status.Confirmed).get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+
+        assertEquals(SeatInventory.ClaimResult.CLAIMED, SeatInventory.instance().claim(1, DATE, seatLabels));
+    }
+}
@@ -0,0 +1,160 @@
+package se325.assignment01.concert.service.services;
+
+import org.junit.*;
+import se325.assignment01.concert.service.domain.Booking;
+import se325.assignment01.concert.service.domain.Seat;
+import se325.assignment01.concert.service.domain.User;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the "conditional" way of booking seats (see {@link Config#BOOKING_SEAT_UPDATE}), which the deployed service
+ * doesn't use by default. Runs against its own in-memory H2 database rather than the deployed service.
+ */
+public class BookingWriterTest {
+
+    private static final List<String> SEAT_LABELS = Arrays.asList("A1", "A2", "A3", "A4");
+
+    private static EntityManagerFactory emf;
+
+    // Each test gets seats on a date of its own.
+    private static LocalDateTime nextDate = LocalDateTime.of(2030, 1, 1, 20, 0, 0);
+
+    private LocalDateTime date;
+
+    @BeforeClass
+    public static void setUpClass() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("javax.persistence.jdbc.url", "jdbc:h2:mem:booking-writer-test;DB_CLOSE_DELAY=-1");
+
+        emf = Persistence.createEntityManagerFactory("se325.assignment01.concert", properties);
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        emf.close();
+    }
+
+    @Before
+    public void setUp() {
+        date = nextDate;
+        nextDate = nextDate.plusDays(1);
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            for (String label : SEAT_LABELS) {
+                em.persist(new Seat(label, false, date, BigDecimal.TEN));
+            }
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Tests that all of the requested seats are booked when they're all free, and that reading them back afterwards
+     * shows them as booked, and belonging to the new booking.
+     */
+    @Test
+    public void testBookSeats() {
+        Booking booking = book(Arrays.asList("A1", "A2"));
+        assertNotNull(booking);
+
+        assertEquals(new HashSet<>(Arrays.asList("A1", "A2")), getBookedLabels());
+
+        EntityManager em = emf.createEntityManager();
+        try {
+            Set<String> bookingLabels = em.find(Booking.class, booking.getId()).getSeats().stream()
+                    .map(Seat::getLabel)
+                    .collect(Collectors.toSet());
+            assertEquals(new HashSet<>(Arrays.asList("A1", "A2")), bookingLabels);
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Tests that nothing is booked when only some of the requested seats are free (which the service reports as a
+     * 403), and that the seats which were free are left that way.
+     */
+    @Test
+    public void testAttemptBookOverlappingSeats() {
+        assertNotNull(book(Arrays.asList("A1", "A2")));
+
+        assertNull(book(Arrays.asList("A2", "A3")));
+
+        assertEquals(new HashSet<>(Arrays.asList("A1", "A2")), getBookedLabels());
+        assertEquals(1, countBookings());
+    }
+
+    /**
+     * Tests that seats which don't exist can't be booked.
+     */
+    @Test
+    public void testAttemptBookNonexistentSeats() {
+        assertNull(book(Arrays.asList("A4", "Z99")));
+
+        assertEquals(Collections.emptySet(), getBookedLabels());
+        assertEquals(0, countBookings());
+    }
+
+    /**
+     * Books the given seats for user 1 in a transaction of its own, the way the service does: committing if they were
+     * all booked, and rolling back otherwise.
+     *
+     * @return the new booking, or null if it couldn't be made.
+     */
+    private Booking book(List<String> seatLabels) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+
+            Booking booking = BookingWriter.writeConditional(em, 1, date, seatLabels,
+                    em.getReference(User.class, 1L), Booking.Status.Confirmed);
+            if (booking == null) {
+                em.getTransaction().rollback();
+                return null;
+            }
+
+            em.getTransaction().commit();
+            return booking;
+
+        } finally {
+            em.close();
+        }
+    }
+
+    private Set<String> getBookedLabels() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createNamedQuery("Seat.findByDateAndStatus", Seat.class)
+                    .setParameter("date", date)
+                    .setParameter("isBooked", true)
+                    .getResultStream()
+                    .map(Seat::getLabel)
+                    .collect(Collectors.toSet());
+        } finally {
+            em.close();
+        }
+    }
+
+    private long countBookings() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createQuery("select count(b) from Booking b where b.date = :date", Long.class)
+                    .setParameter("date", date)
+                    .getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+}
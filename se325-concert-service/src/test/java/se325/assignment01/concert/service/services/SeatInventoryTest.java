@@ -0,0 +1,72 @@
+package se325.assignment01.concert.service.services;
+
+import org.junit.*;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Makes sure that concerts on the same date share its seats in the {@link SeatInventory}, just as they do in the SEATS
+ * table. Runs against its own in-memory H2 database rather than the deployed service.
+ */
+public class SeatInventoryTest {
+
+    private static final LocalDateTime DATE = LocalDateTime.of(2020, 2, 15, 20, 0, 0);
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.setProperty("concert.db.url", "jdbc:h2:mem:seat-inventory-test;DB_CLOSE_DELAY=-1");
+    }
+
+    @Before
+    public void setUp() {
+        new TestResource().resetDatabase();
+
+        // Schedule concert 2 on concert 1's date as well.
+        EntityManager em = PersistenceManager.instance().createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery("insert into CONCERT_DATES (CONCERT_ID, DATE) values (2, ?)")
+                    .setParameter(1, DATE)
+                    .executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+        SeatInventory.instance().rebuild();
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        new TestResource().resetDatabase();
+    }
+
+    /**
+     * Tests that seats claimed for one concert on a date are taken for every other concert on that date too, and that
+     * they all report the same counts.
+     */
+    @Test
+    public void testConcertsOnSameDateShareSeats() {
+        SeatInventory inventory = SeatInventory.instance();
+        assertEquals(Arrays.asList(1L, 2L), inventory.getConcertIds(DATE));
+
+        assertEquals(SeatInventory.ClaimResult.CLAIMED, inventory.claim(1, DATE, Arrays.asList("A1", "A2")));
+        inventory.recordBooked(1, DATE, 2);
+
+        assertEquals(SeatInventory.ClaimResult.CONFLICT, inventory.claim(2, DATE, Collections.singletonList("A2")));
+        assertEquals(Arrays.asList("A1", "A2"), inventory.getTakenLabels(2, DATE));
+        assertEquals(2, inventory.getNumSeatsBooked(2, DATE));
+        assertEquals(0b11, inventory.getTakenRows(DATE)[0]);
+
+        // The best available block for concert 2 avoids concert 1's seats.
+        assertEquals(Arrays.asList("A3", "A4", "A5", "A6", "A7", "A8", "A9", "A10", "A11", "A12"),
+                inventory.claimBestAvailable(2, DATE, 10, 0, 0));
+
+        inventory.release(1, DATE, Arrays.asList("A1", "A2"));
+        assertEquals(SeatInventory.ClaimResult.CLAIMED, inventory.claim(2, DATE, Arrays.asList("A1", "A2")));
+    }
+}